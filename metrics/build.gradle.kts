@@ -54,3 +54,7 @@ configure<LicenseExtension> {
     exclude("**/versions.properties")
     exclude("**/*.txt")
 }
+
+tasks.withType<Test> {
+    useJUnitPlatform()
+}
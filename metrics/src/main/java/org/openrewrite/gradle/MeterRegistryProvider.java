@@ -22,15 +22,19 @@ import io.micrometer.prometheus.PrometheusConfig;
 import io.micrometer.prometheus.PrometheusMeterRegistry;
 import io.micrometer.prometheus.rsocket.PrometheusRSocketClient;
 import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.exporter.common.TextFormat;
 import io.rsocket.transport.ClientTransport;
 import io.rsocket.transport.netty.client.TcpClientTransport;
 import io.rsocket.transport.netty.client.WebsocketClientTransport;
 import org.gradle.api.logging.Logger;
+import reactor.core.publisher.Mono;
 import reactor.netty.http.client.HttpClient;
 import reactor.netty.tcp.TcpClient;
 import reactor.util.retry.Retry;
 
 import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Duration;
 import java.util.Base64;
 
@@ -41,15 +45,50 @@ public class MeterRegistryProvider implements AutoCloseable {
     private final String uriString;
     private final String username;
     private final String password;
+    private final Path projectDirectory;
+
+    private long maxRetries = 5;
+    private boolean asyncFlush = true;
+    private Duration flushTimeout = Duration.ofSeconds(5);
 
     private PrometheusRSocketClient metricsClient;
     private MeterRegistry registry;
+    private Path snapshotDirectory;
 
     public MeterRegistryProvider(Logger log, String uriString, String username, String password) {
+        this(log, uriString, username, password, Paths.get(""));
+    }
+
+    /**
+     * @param projectDirectory The directory that {@code file:} metrics URIs are resolved against.
+     */
+    public MeterRegistryProvider(Logger log, String uriString, String username, String password, Path projectDirectory) {
         this.log = log;
         this.uriString = uriString;
         this.username = username;
         this.password = password;
+        this.projectDirectory = projectDirectory;
+    }
+
+    /**
+     * @param maxRetries How many times to retry connecting to the Prometheus proxy before giving up on it.
+     */
+    public void setMaxRetries(long maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * @param asyncFlush Whether {@link #close()} returns without waiting for the final push to the Prometheus proxy.
+     */
+    public void setAsyncFlush(boolean asyncFlush) {
+        this.asyncFlush = asyncFlush;
+    }
+
+    /**
+     * @param flushTimeout How long the final push to the Prometheus proxy may take before it is abandoned.
+     */
+    public void setFlushTimeout(Duration flushTimeout) {
+        this.flushTimeout = flushTimeout;
     }
 
     public MeterRegistry registry() {
@@ -62,6 +101,11 @@ public class MeterRegistryProvider implements AutoCloseable {
             return new CompositeMeterRegistry();
         } else if ("LOG".equals(uriString)) {
             return new GradleLoggingMeterRegistry(log);
+        } else if (MetricsSnapshot.isFileUri(uriString)) {
+            snapshotDirectory = MetricsSnapshot.directory(projectDirectory, uriString);
+            PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT, new CollectorRegistry(), Clock.SYSTEM);
+            registry.config().meterFilter(MetricsSnapshot.PERCENTILES);
+            return registry;
         } else {
             try {
                 URI uri = URI.create(uriString);
@@ -92,7 +136,7 @@ public class MeterRegistryProvider implements AutoCloseable {
 
                 metricsClient = PrometheusRSocketClient
                         .build(registry, registry::scrape, clientTransport)
-                        .retry(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(3)))
+                        .retry(retry(maxRetries))
                         .connect();
 
                 return registry;
@@ -113,14 +157,49 @@ public class MeterRegistryProvider implements AutoCloseable {
         return WebsocketClientTransport.create(httpClient, "/");
     }
 
+    private static Retry retry(long maxRetries) {
+        return Retry.backoff(maxRetries, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(3));
+    }
+
+    /**
+     * Push the metrics a final time and disconnect from the Prometheus proxy, giving up once the flush timeout has
+     * elapsed so that an unreachable proxy delays neither the build nor the daemon going idle. Unless the flush is
+     * asynchronous, this waits for the push.
+     */
+    private void pushAndClose() {
+        PrometheusRSocketClient client = metricsClient;
+        try {
+            Mono<Void> push = client.pushAndClose()
+                    .timeout(flushTimeout)
+                    .doOnError(t -> {
+                        // sometimes fails when connection already closed, e.g. due to flaky internet connection
+                        log.debug("Unable to push metrics before disconnecting", t);
+                        client.close();
+                    })
+                    .onErrorResume(t -> Mono.empty());
+            if (asyncFlush) {
+                push.subscribe();
+            } else {
+                push.block();
+            }
+        } catch (Throwable t) {
+            log.debug("Unable to push metrics before disconnecting", t);
+        }
+    }
+
     @Override
     public void close() throws Exception {
         if (metricsClient != null) {
+            pushAndClose();
+        }
+
+        if (snapshotDirectory != null && registry instanceof PrometheusMeterRegistry) {
             try {
-                // The push and close will block for one second. If the build ends before the dying push can happen, so be it.
-                metricsClient.pushAndClose();
-            } catch (Throwable ignore) {
-                // sometimes fails when connection already closed, e.g. due to flaky internet connection
+                Path snapshot = MetricsSnapshot.write(snapshotDirectory,
+                        ((PrometheusMeterRegistry) registry).scrape(TextFormat.CONTENT_TYPE_OPENMETRICS_100));
+                log.info("Wrote a snapshot of the metrics to {}", snapshot);
+            } catch (Throwable t) {
+                log.warn("Unable to write a snapshot of the metrics", t);
             }
         }
 
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.gradle;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+
+/**
+ * Writes metrics to a file for builds which have no Prometheus proxy to publish them to, e.g. offline or air-gapped
+ * CI agents. Metrics URIs with the {@code file} scheme name the directory to write to:
+ * <ul>
+ *     <li>{@code file:} writes to {@code build/reports/rewrite/metrics} of the project.</li>
+ *     <li>{@code file:some/dir} writes to a directory relative to the project.</li>
+ *     <li>{@code file:///some/dir} writes to an absolute directory.</li>
+ * </ul>
+ */
+final class MetricsSnapshot {
+    static final String FILE_NAME = "metrics.txt";
+
+    /**
+     * Timers and distribution summaries publish their percentiles and a histogram, so that a snapshot shows more than
+     * the count, mean and max of each. Distribution statistics are normally only kept for the last few minutes, but a
+     * snapshot should describe the whole build.
+     */
+    static final MeterFilter PERCENTILES = new MeterFilter() {
+        @Override
+        public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+            if (id.getType() != Meter.Type.TIMER && id.getType() != Meter.Type.DISTRIBUTION_SUMMARY) {
+                return config;
+            }
+            return DistributionStatisticConfig.builder()
+                    .percentiles(0.5, 0.95, 0.99)
+                    .percentilesHistogram(true)
+                    .expiry(Duration.ofDays(1))
+                    .bufferLength(1)
+                    .build()
+                    .merge(config);
+        }
+    };
+
+    private MetricsSnapshot() {
+    }
+
+    static boolean isFileUri(String uriString) {
+        return uriString.startsWith("file:");
+    }
+
+    static Path directory(Path projectDirectory, String uriString) {
+        String path = uriString.substring("file:".length());
+        if (path.isEmpty()) {
+            return projectDirectory.resolve("build").resolve("reports").resolve("rewrite").resolve("metrics");
+        }
+        if (path.startsWith("//")) {
+            return Paths.get(URI.create(uriString));
+        }
+        return projectDirectory.resolve(path);
+    }
+
+    /**
+     * @param scrape A scrape in the OpenMetrics text format.
+     * @return The file written.
+     */
+    static Path write(Path directory, String scrape) {
+        Path file = directory.resolve(FILE_NAME);
+        Path temp = directory.resolve(FILE_NAME + ".tmp");
+        try {
+            Files.createDirectories(directory);
+            Files.write(temp, scrape.getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write the metrics snapshot to " + directory, e);
+        }
+        return file;
+    }
+}
@@ -25,6 +25,8 @@ import java.net.UnknownHostException;
 public class RewriteMetricsExtension {
     /**
      * In the form tcp://host:port, http://host:port, https://host:port, ws://host:port, wss://host:port. Port is optional.
+     * Or file:some/dir, relative to the root project, or file:///some/dir, to write the metrics to a file when the
+     * build finishes instead of publishing them.
      */
     private URI metricsUri;
 
@@ -37,6 +39,10 @@ public class RewriteMetricsExtension {
      */
     private Iterable<Tag> extraMetricsTags = Tags.empty();
 
+    private long metricsConnectRetries = 5;
+    private boolean asyncMetricsFlush;
+    private long metricsFlushTimeoutMs = 5000;
+
     public RewriteMetricsExtension() {
         try {
             extraMetricsTags = Tags.concat(extraMetricsTags, "host", InetAddress.getLocalHost().getHostName());
@@ -60,6 +66,44 @@ public class RewriteMetricsExtension {
         this.extraMetricsTags = extraMetricsTags;
     }
 
+    /**
+     * How many times to retry connecting to the Prometheus proxy before giving up on publishing metrics for the
+     * build, so that an unreachable proxy is not retried for as long as the daemon lives.
+     */
+    public long getMetricsConnectRetries() {
+        return metricsConnectRetries;
+    }
+
+    public void setMetricsConnectRetries(long metricsConnectRetries) {
+        this.metricsConnectRetries = metricsConnectRetries;
+    }
+
+    /**
+     * Whether the build finishes without waiting for the final push of metrics to the Prometheus proxy. This covers
+     * the meters of the rewrite tasks too, which are published along with the JVM metrics. Off by default, in which
+     * case the build waits for the push for up to {@link #getMetricsFlushTimeoutMs()}. Only turn this on for builds
+     * run by a daemon, as a JVM which exits at the end of the build, such as with {@code --no-daemon}, drops a push
+     * still in flight.
+     */
+    public boolean isAsyncMetricsFlush() {
+        return asyncMetricsFlush;
+    }
+
+    public void setAsyncMetricsFlush(boolean asyncMetricsFlush) {
+        this.asyncMetricsFlush = asyncMetricsFlush;
+    }
+
+    /**
+     * How long the final push of metrics to the Prometheus proxy may take before it is abandoned.
+     */
+    public long getMetricsFlushTimeoutMs() {
+        return metricsFlushTimeoutMs;
+    }
+
+    public void setMetricsFlushTimeoutMs(long metricsFlushTimeoutMs) {
+        this.metricsFlushTimeoutMs = metricsFlushTimeoutMs;
+    }
+
     public String getMetricsUsername() {
         return metricsUsername;
     }
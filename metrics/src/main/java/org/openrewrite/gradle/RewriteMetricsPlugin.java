@@ -15,44 +15,66 @@
  */
 package org.openrewrite.gradle;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
 import io.micrometer.core.instrument.binder.jvm.JvmGcMetrics;
 import io.micrometer.core.instrument.binder.jvm.JvmHeapPressureMetrics;
 import io.micrometer.core.instrument.binder.jvm.JvmMemoryMetrics;
 import io.micrometer.core.instrument.binder.system.ProcessorMetrics;
-import io.micrometer.prometheus.PrometheusConfig;
-import io.micrometer.prometheus.PrometheusMeterRegistry;
-import io.micrometer.prometheus.rsocket.PrometheusRSocketClient;
-import io.rsocket.transport.ClientTransport;
-import io.rsocket.transport.netty.client.TcpClientTransport;
-import io.rsocket.transport.netty.client.WebsocketClientTransport;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
 import org.gradle.BuildAdapter;
 import org.gradle.BuildResult;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
-import reactor.netty.http.client.HttpClient;
-import reactor.netty.tcp.TcpClient;
-import reactor.util.retry.Retry;
 
 import java.net.URI;
 import java.time.Duration;
-import java.util.Base64;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleConsumer;
+import java.util.function.Function;
 
 /**
  * Coordinates the publication of metrics for each rewrite plugin and each subproject along with general purpose metrics
  * related to JVM health to a Prometheus proxy.
+ * <p>
+ * The rewrite tasks are loaded in their own class loader, so they can't register meters in this plugin's registry
+ * directly. Instead, the root project's {@value #REWRITE_METRICS_RECORDER_PROPERTY} extra property holds a
+ * {@code Function<Map<String, String>, DoubleConsumer>}, which registers the meter a map describes and returns what
+ * to record a value into. The map holds:
+ * <ul>
+ *     <li>{@code type}, one of {@code timer} (recording nanoseconds), {@code summary} or {@code counter}.</li>
+ *     <li>{@code name} and {@code description} of the meter.</li>
+ *     <li>{@code histogram}, {@code true} when a timer or summary should publish a percentile histogram.</li>
+ *     <li>{@code tag.<key>} for each of the meter's tags, e.g. {@code tag.project.name}.</li>
+ * </ul>
  */
 public class RewriteMetricsPlugin implements Plugin<Project> {
+    private static final String REWRITE_METRICS_RECORDER_PROPERTY = "rewriteMetricsRecorder";
+    private static final String TAG_PREFIX = "tag.";
+
     private RewriteMetricsExtension extension;
-    private final PrometheusMeterRegistry rootProjectMeterRegistry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+
+    /**
+     * Until the root project is evaluated, and when no metrics URI is configured, meters aren't published anywhere.
+     */
+    private MeterRegistry rootProjectMeterRegistry = new CompositeMeterRegistry();
 
     @Override
     public void apply(Project project) {
         if (project.getRootProject() == project) {
             this.extension = project.getExtensions().create("rewriteMetrics", RewriteMetricsExtension.class);
+            project.getExtensions().getExtraProperties().set(REWRITE_METRICS_RECORDER_PROPERTY,
+                    (Function<Map<String, String>, DoubleConsumer>) this::register);
 
             project.afterEvaluate(p -> {
+                MeterRegistryProvider meterRegistryProvider = meterRegistryProvider(project);
+                rootProjectMeterRegistry = meterRegistryProvider.registry();
                 rootProjectMeterRegistry.config()
                         .commonTags(
                                 "project.root.project.name", project.getName(),
@@ -65,7 +87,16 @@ public class RewriteMetricsPlugin implements Plugin<Project> {
                 new JvmHeapPressureMetrics().bindTo(rootProjectMeterRegistry);
                 new ProcessorMetrics().bindTo(rootProjectMeterRegistry);
 
-                connectToPrometheusProxy(project);
+                project.getGradle().addBuildListener(new BuildAdapter() {
+                    @Override
+                    public void buildFinished(BuildResult result) {
+                        try {
+                            meterRegistryProvider.close();
+                        } catch (Exception e) {
+                            project.getLogger().warn("Unable to publish metrics", e);
+                        }
+                    }
+                });
             });
         } else {
             project.getLogger().warn("org.gradle.rewrite-metrics should only be applied to the root project");
@@ -73,78 +104,72 @@ public class RewriteMetricsPlugin implements Plugin<Project> {
     }
 
     /**
-     * Connects "after-evaluate" and disconnects on build finish so that the meter registries themselves can remain in
-     * the daemon between runs, but metrics are only published when the build is running (plus a fire-and-forget push
-     * when the build finishes).
+     * Connects "after-evaluate" and disconnects on build finish so that metrics are only published when the build is
+     * running (plus a fire-and-forget push when the build finishes), or written to a file when the build finishes for
+     * a {@code file:} metrics URI.
      *
      * @param project The root project.
      */
-    private void connectToPrometheusProxy(Project project) {
+    private MeterRegistryProvider meterRegistryProvider(Project project) {
         URI uri = extension.getMetricsUri();
-        if (uri != null) {
-            ClientTransport clientTransport;
-            switch (uri.getScheme()) {
-                case "ephemeral":
-                case "https":
-                case "wss": {
+        MeterRegistryProvider meterRegistryProvider = new MeterRegistryProvider(project.getLogger(),
+                uri == null ? null : uri.toString(),
+                extension.getMetricsUsername(), extension.getMetricsPassword(),
+                project.getProjectDir().toPath());
+        meterRegistryProvider.setMaxRetries(extension.getMetricsConnectRetries());
+        meterRegistryProvider.setAsyncFlush(extension.isAsyncMetricsFlush());
+        meterRegistryProvider.setFlushTimeout(Duration.ofMillis(extension.getMetricsFlushTimeoutMs()));
+        return meterRegistryProvider;
+    }
 
-                    TcpClient tcpClient = TcpClient.create().secure().host(uri.getHost()).port(getPort(uri, 443));
-                    clientTransport = websocketClientTransport(tcpClient);
-                    break;
-                }
-                case "http":
-                case "ws": {
-                    TcpClient tcpClient = TcpClient.create().host(uri.getHost()).port(getPort(uri, 80));
-                    clientTransport = websocketClientTransport(tcpClient);
-                    break;
-                }
-                case "tcp":
-                    clientTransport = TcpClientTransport.create(uri.getHost(), uri.getPort());
-                    break;
-                default:
-                    project.getLogger().warn("Unable to publish metrics. Unrecognized scheme {}", uri.getScheme());
-                    return;
+    /**
+     * Register a meter of the rewrite tasks, which record into this plugin's registry so that every project's meters
+     * are published in a single scrape, alongside the JVM metrics.
+     *
+     * @param meter The meter, as described in this class's documentation.
+     * @return What to record a value of the meter into.
+     */
+    private DoubleConsumer register(Map<String, String> meter) {
+        String name = meter.get("name");
+        String description = meter.get("description");
+        Tags tags = Tags.empty();
+        for (Map.Entry<String, String> entry : meter.entrySet()) {
+            if (entry.getKey().startsWith(TAG_PREFIX)) {
+                tags = tags.and(entry.getKey().substring(TAG_PREFIX.length()), entry.getValue());
             }
-
-            PrometheusRSocketClient metricsClient = PrometheusRSocketClient
-                    .build(
-                            rootProjectMeterRegistry,
-                            () -> rootProjectMeterRegistry.scrape() + scrapeFromEachProject(project),
-                            clientTransport
-                    )
-                    .retry(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(3)))
-                    .connect();
-
-            project.getGradle().addBuildListener(new BuildAdapter() {
-                @Override
-                public void buildFinished(BuildResult result) {
-                    try {
-                        // The push and close will block for one second. If the daemon dies before the dying push can happen, so be it.
-                        metricsClient.pushAndClose();
-                    } catch (Throwable ignore) {
-                        // sometimes fails when connection already closed, e.g. due to flaky internet connection
-                        ignore.printStackTrace();
-                    }
-                }
-            });
         }
-    }
+        boolean histogram = Boolean.parseBoolean(meter.get("histogram"));
 
-    private String scrapeFromEachProject(Project rootProject) {
-        throw new RuntimeException("Not implemented. Put this back in once metrics have been wired back into RewritePlugin");
-//        return rootProject.getAllprojects().stream()
-//                .flatMap(p -> p.getPlugins().withType(RewritePlugin.class).stream()
-//                        .map(plugin -> plugin.getMeterRegistry().scrape()))
-//                .collect(Collectors.joining(""));
-    }
-
-    private ClientTransport websocketClientTransport(TcpClient tcpClient) {
-        HttpClient httpClient = HttpClient.from(tcpClient).wiretap(true);
-        if (extension.getMetricsUsername() != null && extension.getMetricsPassword() != null) {
-            httpClient = httpClient.headers(h -> h.add("Authorization", "Basic: " + Base64.getUrlEncoder()
-                    .encodeToString((extension.getMetricsUsername() + ":" + extension.getMetricsPassword()).getBytes())));
+        switch (String.valueOf(meter.get("type"))) {
+            case "timer": {
+                Timer timer = Timer.builder(name)
+                        .description(description)
+                        .tags(tags)
+                        .publishPercentiles(0.5, 0.95, 0.99)
+                        .publishPercentileHistogram(histogram)
+                        .register(rootProjectMeterRegistry);
+                return nanos -> timer.record((long) nanos, TimeUnit.NANOSECONDS);
+            }
+            case "summary": {
+                DistributionSummary summary = DistributionSummary.builder(name)
+                        .description(description)
+                        .tags(tags)
+                        .publishPercentiles(0.5, 0.95, 0.99)
+                        .publishPercentileHistogram(histogram)
+                        .register(rootProjectMeterRegistry);
+                return summary::record;
+            }
+            case "counter": {
+                Counter counter = Counter.builder(name)
+                        .description(description)
+                        .tags(tags)
+                        .register(rootProjectMeterRegistry);
+                return counter::increment;
+            }
+            default:
+                return value -> {
+                };
         }
-        return WebsocketClientTransport.create(httpClient, "/");
     }
 
     /**
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.gradle
+
+import org.gradle.testkit.runner.GradleRunner
+import spock.lang.Specification
+import spock.lang.TempDir
+
+class MetricsSnapshotTests extends Specification {
+
+    @TempDir
+    File projectDir
+
+    def "metrics are written to a file when the build finishes"() {
+        given:
+        new File(projectDir, 'settings.gradle') << """\
+            rootProject.name = 'hello-world'
+        """.stripIndent()
+
+        new File(projectDir, 'build.gradle') << """\
+            plugins {
+                id 'org.openrewrite.rewrite-metrics'
+            }
+
+            rewriteMetrics {
+                metricsUri = URI.create('file:')
+            }
+
+            // Records meters the way the rewrite tasks do, for two projects
+            tasks.register('recordRewriteMetrics') {
+                doLast {
+                    def recorder = rootProject.ext.rewriteMetricsRecorder
+                    ['a', 'b'].each { project ->
+                        recorder.apply([
+                                type: 'timer',
+                                name: 'rewrite.parse',
+                                description: 'The time taken to parse a source',
+                                histogram: 'true',
+                                'tag.language': 'java',
+                                'tag.project.name': project
+                        ]).accept(2000000d)
+                    }
+                }
+            }
+        """.stripIndent()
+
+        when:
+        GradleRunner.create()
+                .withProjectDir(projectDir)
+                .withPluginClasspath()
+                .withArguments('recordRewriteMetrics')
+                .build()
+
+        then:
+        def snapshot = new File(projectDir, 'build/reports/rewrite/metrics/metrics.txt').text
+        snapshot.contains('rewrite_parse_seconds_bucket{')
+        snapshot.contains('project_name="a"')
+        snapshot.contains('project_name="b"')
+        snapshot.contains('quantile="0.95"')
+        snapshot.contains('project_root_project_name="hello-world"')
+        snapshot.contains('jvm_memory_used_bytes')
+        snapshot.findAll('# TYPE rewrite_parse_seconds ').size() == 1
+        snapshot.findAll('# EOF').size() == 1
+        snapshot.trim().endsWith('# EOF')
+    }
+}
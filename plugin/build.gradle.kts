@@ -93,6 +93,9 @@ val rewriteDependencies = configurations.create("rewriteDependencies")
 configurations.named("compileOnly").configure {
     extendsFrom(rewriteDependencies)
 }
+configurations.named("testImplementation").configure {
+    extendsFrom(rewriteDependencies)
+}
 
 dependencies {
     "rewriteDependencies"(platform("org.openrewrite:rewrite-bom:$latest"))
@@ -125,6 +125,16 @@ public class DelegatingProjectParser implements GradleProjectParser {
         });
     }
 
+    @Override
+    public void perfReport(Path reportPath, Path baselinePath, int regressionThreshold, boolean failOnRegression,
+                           boolean updateBaseline, boolean writeBack, Consumer<Throwable> onError) {
+        unwrapInvocationException(() -> {
+            gpp.perfReport(reportPath, baselinePath, regressionThreshold, failOnRegression, updateBaseline, writeBack,
+                    onError);
+            return null;
+        });
+    }
+
     @Override
     public void shutdownRewrite() {
         unwrapInvocationException(() -> {
@@ -45,5 +45,18 @@ public interface GradleProjectParser {
 
     void dryRun(Path reportPath, boolean dumpGcActivity, Consumer<Throwable> onError);
 
+    /**
+     * Run the active recipes, writing the time taken by each phase of the run to {@code reportPath}, and comparing
+     * it with the baseline at {@code baselinePath}.
+     *
+     * @param regressionThreshold How many percent longer than in the baseline a phase may take.
+     * @param failOnRegression    Whether to fail, rather than warn, when a phase took longer than that.
+     * @param updateBaseline      Whether this run's report replaces the baseline.
+     * @param writeBack           Whether to write the results back to the sources, as rewriteRun does, rather than to
+     *                            a patch, as rewriteDryRun does.
+     */
+    void perfReport(Path reportPath, Path baselinePath, int regressionThreshold, boolean failOnRegression,
+                    boolean updateBaseline, boolean writeBack, Consumer<Throwable> onError);
+
     void shutdownRewrite();
 }
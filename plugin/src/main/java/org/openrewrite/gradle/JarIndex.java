@@ -0,0 +1,291 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.gradle;
+
+import org.jspecify.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.*;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Which jars of a class loader's classpath contain which packages, built by reading every jar's table of contents
+ * in parallel. This lets a class be read straight from the jar that contains it, rather than by trying every entry of
+ * the classpath in turn, and lets a lookup for a class or resource in none of them fail immediately.
+ * <p>
+ * The jars named by the {@code Class-Path} attribute of a jar's manifest are indexed too, in the position the class
+ * loader searches them: right after the jar which names them.
+ * <p>
+ * Directories and unreadable jars can't be indexed. Any lookup which one of those might answer ahead of the jars
+ * is left to the class loader as before, as is reading classes from jars which are signed or multi-release.
+ */
+class JarIndex implements Closeable {
+    private final Map<String, List<IndexedJar>> jarsByDirectory = new HashMap<>();
+
+    private final List<IndexedJar> jars = new ArrayList<>();
+
+    /**
+     * The position on the classpath of the first entry which couldn't be indexed.
+     */
+    private final int firstUnindexed;
+
+    JarIndex(URL[] classpath) {
+        List<IndexedJar> read = IntStream.range(0, classpath.length)
+                .parallel()
+                .mapToObj(i -> IndexedJar.read(classpath[i]))
+                .collect(Collectors.toList());
+        Map<String, @Nullable IndexedJar> readByUrl = new HashMap<>();
+        for (int i = 0; i < classpath.length; i++) {
+            IndexedJar jar = read.get(i);
+            if (readByUrl.containsKey(classpath[i].toString())) {
+                // The class loader only ever searches the first occurrence of a classpath entry
+                if (jar != null) {
+                    jar.close();
+                }
+            } else {
+                readByUrl.put(classpath[i].toString(), jar);
+            }
+        }
+
+        List<@Nullable IndexedJar> searchOrder = new ArrayList<>();
+        Set<String> searched = new HashSet<>();
+        for (URL url : classpath) {
+            addInSearchOrder(url, readByUrl, searchOrder, searched);
+        }
+
+        int unindexed = Integer.MAX_VALUE;
+        // Merged in search order, so that the first jar containing a class is the one the classpath would find
+        for (int i = 0; i < searchOrder.size(); i++) {
+            IndexedJar jar = searchOrder.get(i);
+            if (jar == null) {
+                unindexed = Math.min(unindexed, i);
+                continue;
+            }
+            jar.position = i;
+            jars.add(jar);
+            for (String directory : jar.directories) {
+                jarsByDirectory.computeIfAbsent(directory, d -> new ArrayList<>(1)).add(jar);
+            }
+        }
+        this.firstUnindexed = unindexed;
+    }
+
+    /**
+     * Add a classpath entry, followed by the jars its manifest names, as the class loader searches them: each once,
+     * skipping any which don't exist.
+     */
+    private static void addInSearchOrder(URL url, Map<String, @Nullable IndexedJar> readByUrl,
+                                         List<@Nullable IndexedJar> searchOrder, Set<String> searched) {
+        if (!searched.add(url.toString()) || isMissing(url)) {
+            return;
+        }
+        IndexedJar jar = readByUrl.containsKey(url.toString()) ? readByUrl.get(url.toString()) : IndexedJar.read(url);
+        searchOrder.add(jar);
+        if (jar != null) {
+            for (URL referenced : jar.manifestClassPath()) {
+                addInSearchOrder(referenced, readByUrl, searchOrder, searched);
+            }
+        }
+    }
+
+    private static boolean isMissing(URL url) {
+        if (!"file".equals(url.getProtocol())) {
+            return false;
+        }
+        try {
+            return !new File(url.toURI()).exists();
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return Whether {@code name}, a class file or resource path, is definitely on none of the classpath.
+     */
+    boolean isAbsent(String name) {
+        return firstUnindexed == Integer.MAX_VALUE && !jarsByDirectory.containsKey(directoryOf(name));
+    }
+
+    /**
+     * @return The jar which the classpath would load the class file {@code name} from, if its classes can be read
+     * directly, or {@code null} if the class loader should look for it as usual.
+     */
+    @Nullable
+    IndexedJar find(String name) {
+        for (IndexedJar jar : jarsByDirectory.getOrDefault(directoryOf(name), Collections.emptyList())) {
+            if (jar.position > firstUnindexed) {
+                return null;
+            }
+            if (jar.jarFile.getJarEntry(name) != null) {
+                return jar.direct ? jar : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Close every indexed jar, including those named by a manifest, which the class loader itself doesn't know of.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (IndexedJar jar : jars) {
+            try {
+                jar.jarFile.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static String directoryOf(String name) {
+        int lastSlash = name.lastIndexOf('/');
+        return lastSlash == -1 ? "" : name.substring(0, lastSlash);
+    }
+
+    static class IndexedJar {
+        final URL url;
+        final JarFile jarFile;
+
+        @Nullable
+        final Manifest manifest;
+
+        /**
+         * The position of the jar in the order the class loader searches it.
+         */
+        private int position;
+
+        private final Set<String> directories;
+
+        /**
+         * Whether classes can be read straight from the jar. Signed jars need their classes verified and multi-release
+         * jars need the version of a class for the running JVM chosen, which is left to the class loader.
+         */
+        private final boolean direct;
+
+        private IndexedJar(URL url, JarFile jarFile, @Nullable Manifest manifest,
+                           Set<String> directories, boolean direct) {
+            this.url = url;
+            this.jarFile = jarFile;
+            this.manifest = manifest;
+            this.directories = directories;
+            this.direct = direct;
+        }
+
+        /**
+         * @return The jars named by the {@code Class-Path} attribute of the manifest, relative to this jar.
+         */
+        private List<URL> manifestClassPath() {
+            String classPath = manifest == null ? null : manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+            if (classPath == null) {
+                return Collections.emptyList();
+            }
+            List<URL> urls = new ArrayList<>();
+            StringTokenizer entries = new StringTokenizer(classPath);
+            while (entries.hasMoreTokens()) {
+                try {
+                    urls.add(new URL(url, entries.nextToken()));
+                } catch (MalformedURLException e) {
+                    // Skipped by the class loader as well
+                }
+            }
+            return urls;
+        }
+
+        private void close() {
+            try {
+                jarFile.close();
+            } catch (IOException ignored) {
+            }
+        }
+
+        /**
+         * @return The index of a jar, or {@code null} if it's not a jar which could be read.
+         */
+        private static @Nullable IndexedJar read(URL url) {
+            if (!"file".equals(url.getProtocol())) {
+                return null;
+            }
+            File file;
+            try {
+                file = new File(url.toURI());
+            } catch (URISyntaxException | IllegalArgumentException e) {
+                return null;
+            }
+            if (!file.isFile()) {
+                return null;
+            }
+            JarFile jarFile = null;
+            try {
+                jarFile = new JarFile(file);
+                Manifest manifest = jarFile.getManifest();
+                boolean direct = manifest == null ||
+                                 !Boolean.parseBoolean(manifest.getMainAttributes().getValue(new Attributes.Name("Multi-Release")));
+                Set<String> directories = new HashSet<>();
+                for (Enumeration<JarEntry> entries = jarFile.entries(); entries.hasMoreElements(); ) {
+                    String name = entries.nextElement().getName();
+                    if (name.startsWith("META-INF/") && (name.endsWith(".SF") || name.endsWith(".RSA") ||
+                                                         name.endsWith(".DSA") || name.endsWith(".EC"))) {
+                        direct = false;
+                    }
+                    if (name.endsWith("/")) {
+                        name = name.substring(0, name.length() - 1);
+                    }
+                    if (name.startsWith("META-INF/versions/")) {
+                        // Indexed as well where the class loader of a newer JVM would look for it
+                        int versionEnd = name.indexOf('/', "META-INF/versions/".length());
+                        if (versionEnd != -1) {
+                            String unversioned = name.substring(versionEnd + 1);
+                            for (String directory = directoryOf(unversioned); directories.add(directory) && !directory.isEmpty(); ) {
+                                directory = directoryOf(directory);
+                            }
+                        }
+                    }
+                    // Every enclosing directory, so that looking up a directory itself as a resource finds this jar
+                    for (String directory = directoryOf(name); directories.add(directory) && !directory.isEmpty(); ) {
+                        directory = directoryOf(directory);
+                    }
+                }
+                return new IndexedJar(url, jarFile, manifest, directories, direct);
+            } catch (IOException e) {
+                if (jarFile != null) {
+                    try {
+                        jarFile.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+                return null;
+            }
+        }
+    }
+}
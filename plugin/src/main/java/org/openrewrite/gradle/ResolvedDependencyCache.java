@@ -0,0 +1,153 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.gradle;
+
+import org.gradle.api.artifacts.Dependency;
+import org.gradle.api.artifacts.DependencyArtifact;
+import org.gradle.api.artifacts.ExcludeRule;
+import org.gradle.api.artifacts.ExternalModuleDependency;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.jspecify.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Remembers which files the rewrite classpath resolved to for a given set of requested dependencies, in a file much
+ * like a lockfile under the Gradle user home, so that later builds can skip resolving them altogether.
+ * <p>
+ * Only dependencies requested with a fixed version are remembered, since the files a dynamic version, a changing
+ * snapshot or a project dependency resolves to can differ from one build to the next. Remembered files are only used
+ * while every one of them still exists.
+ */
+class ResolvedDependencyCache {
+    private static final Logger logger = Logging.getLogger(ResolvedDependencyCache.class);
+
+    private final Path directory;
+
+    ResolvedDependencyCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return A key identifying the files these dependencies resolve to, or {@code null} if they may resolve to
+     * different files each time.
+     */
+    static @Nullable String key(Collection<Dependency> dependencies, String gradleVersion) {
+        List<String> requested = new ArrayList<>(dependencies.size());
+        for (Dependency dependency : dependencies) {
+            if (!(dependency instanceof ExternalModuleDependency)) {
+                return null;
+            }
+            ExternalModuleDependency module = (ExternalModuleDependency) dependency;
+            String version = module.getVersion();
+            if (version == null || module.isChanging() || isDynamic(version)) {
+                return null;
+            }
+            StringBuilder description = new StringBuilder()
+                    .append(module.getGroup()).append(':').append(module.getName()).append(':').append(version)
+                    .append(module.isTransitive() ? "" : "@intransitive");
+            for (DependencyArtifact artifact : module.getArtifacts()) {
+                description.append("|artifact=").append(artifact.getName()).append(':').append(artifact.getType())
+                        .append(':').append(artifact.getExtension()).append(':').append(artifact.getClassifier());
+            }
+            for (ExcludeRule exclude : module.getExcludeRules()) {
+                description.append("|exclude=").append(exclude.getGroup()).append(':').append(exclude.getModule());
+            }
+            requested.add(description.toString());
+        }
+        Collections.sort(requested);
+        requested.add(0, "gradle=" + gradleVersion);
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(String.join("\n", requested).getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return The files remembered for this key, or {@code null} if there are none or any of them no longer exists.
+     */
+    @Nullable
+    Set<File> read(String key) {
+        Path file = directory.resolve(key + ".lock");
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            Set<File> resolved = new LinkedHashSet<>();
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                File dependency = new File(line);
+                if (!dependency.isFile()) {
+                    logger.info("Resolving the rewrite classpath again, as {} no longer exists", dependency);
+                    return null;
+                }
+                resolved.add(dependency);
+            }
+            return resolved;
+        } catch (IOException e) {
+            logger.debug("Unable to read the resolved rewrite classpath {}", file, e);
+            return null;
+        }
+    }
+
+    void write(String key, Set<File> resolved) {
+        Path file = directory.resolve(key + ".lock");
+        Path temp = directory.resolve(key + ".lock." + Thread.currentThread().getId() + ".tmp");
+        List<String> lines = new ArrayList<>(resolved.size());
+        for (File dependency : resolved) {
+            lines.add(dependency.getAbsolutePath());
+        }
+        try {
+            Files.createDirectories(directory);
+            Files.write(temp, lines, StandardCharsets.UTF_8);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // Resolved again next time
+            logger.debug("Unable to write the resolved rewrite classpath {}", file, e);
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static boolean isDynamic(String version) {
+        return version.isEmpty() ||
+               version.endsWith("+") ||
+               version.startsWith("latest.") ||
+               version.endsWith("-SNAPSHOT") ||
+               version.startsWith("[") || version.startsWith("(") ||
+               version.endsWith("]") || version.endsWith(")");
+    }
+}
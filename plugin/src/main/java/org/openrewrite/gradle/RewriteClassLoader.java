@@ -15,11 +15,16 @@
  */
 package org.openrewrite.gradle;
 
+import org.jspecify.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.net.URLClassLoader;
-import java.util.Arrays;
-import java.util.Collection;
-import java.util.List;
+import java.security.CodeSigner;
+import java.security.CodeSource;
+import java.util.*;
 
 /**
  * Rewrite uses jackson for serialization/deserialization. So do lots of other build plugins.
@@ -29,6 +34,11 @@ import java.util.List;
  */
 public class RewriteClassLoader extends URLClassLoader {
 
+    static {
+        // Rewrite classes are loaded from the worker threads parsing and writing sources at the same time
+        registerAsParallelCapable();
+    }
+
     private static final List<String> PARENT_LOADED_PACKAGES = Arrays.asList(
             "org.openrewrite.gradle.GradleProjectParser",
             "org.openrewrite.gradle.DefaultRewriteExtension",
@@ -39,6 +49,7 @@ public class RewriteClassLoader extends URLClassLoader {
             "org.codehaus.groovy");
     private static final List<String> PLUGIN_LOADED_PACKAGES = Arrays.asList("com.android");
     private final ClassLoader pluginClassLoader;
+    private final JarIndex jarIndex;
 
     public RewriteClassLoader(Collection<URL> artifacts) {
         this(artifacts, RewriteClassLoader.class.getClassLoader());
@@ -47,6 +58,7 @@ public class RewriteClassLoader extends URLClassLoader {
     public RewriteClassLoader(Collection<URL> artifacts, ClassLoader pluginClassLoader) {
         super(artifacts.toArray(new URL[0]), RewriteClassLoader.class.getClassLoader());
         this.pluginClassLoader = pluginClassLoader;
+        this.jarIndex = new JarIndex(getURLs());
         setDefaultAssertionStatus(true);
     }
 
@@ -61,24 +73,92 @@ public class RewriteClassLoader extends URLClassLoader {
      * of Android Gradle plugin classes, we use the ClassLoader of the plugin.
      */
     protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
-        Class<?> foundClass = findLoadedClass(name);
-        if (foundClass == null) {
-            try {
-                if (shouldBeParentLoaded(name)) {
+        synchronized (getClassLoadingLock(name)) {
+            Class<?> foundClass = findLoadedClass(name);
+            if (foundClass == null) {
+                try {
+                    if (shouldBeParentLoaded(name)) {
+                        foundClass = super.loadClass(name, resolve);
+                    } else if (shouldBePluginLoaded(name)) {
+                        foundClass = Class.forName(name, resolve, pluginClassLoader);
+                    } else {
+                        foundClass = findClass(name);
+                    }
+                } catch (ClassNotFoundException e) {
                     foundClass = super.loadClass(name, resolve);
-                } else if (shouldBePluginLoaded(name)) {
-                    foundClass = Class.forName(name, resolve, pluginClassLoader);
-                } else {
-                    foundClass = findClass(name);
                 }
-            } catch (ClassNotFoundException e) {
-                foundClass = super.loadClass(name, resolve);
             }
+            if (resolve) {
+                resolveClass(foundClass);
+            }
+            return foundClass;
+        }
+    }
+
+    /**
+     * Read the class straight from the jar the {@link JarIndex} says contains it. Classes loaded from the parent
+     * class loader, which make up most lookups, are first looked for here, so ruling those out without searching
+     * every jar matters as much as finding recipe classes quickly.
+     */
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        String path = name.replace('.', '/') + ".class";
+        if (jarIndex.isAbsent(path)) {
+            throw new ClassNotFoundException(name);
         }
-        if (resolve) {
-            resolveClass(foundClass);
+        JarIndex.IndexedJar jar = jarIndex.find(path);
+        if (jar == null) {
+            return super.findClass(name);
+        }
+
+        byte[] bytes;
+        try (InputStream in = jar.jarFile.getInputStream(jar.jarFile.getJarEntry(path))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            bytes = out.toByteArray();
+        } catch (IOException e) {
+            throw new ClassNotFoundException(name, e);
+        }
+
+        int lastDot = name.lastIndexOf('.');
+        if (lastDot != -1) {
+            String packageName = name.substring(0, lastDot);
+            if (getPackage(packageName) == null) {
+                try {
+                    if (jar.manifest == null) {
+                        definePackage(packageName, null, null, null, null, null, null, null);
+                    } else {
+                        definePackage(packageName, jar.manifest, jar.url);
+                    }
+                } catch (IllegalArgumentException e) {
+                    // Already defined by another thread
+                }
+            }
+        }
+        return defineClass(name, bytes, 0, bytes.length, new CodeSource(jar.url, (CodeSigner[]) null));
+    }
+
+    @Override
+    public @Nullable URL findResource(String name) {
+        return jarIndex.isAbsent(name) ? null : super.findResource(name);
+    }
+
+    @Override
+    public Enumeration<URL> findResources(String name) throws IOException {
+        return jarIndex.isAbsent(name) ? Collections.emptyEnumeration() : super.findResources(name);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            jarIndex.close();
+        } finally {
+            super.close();
         }
-        return foundClass;
     }
 
     protected boolean shouldBeParentLoaded(String name) {
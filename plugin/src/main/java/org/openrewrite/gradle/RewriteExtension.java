@@ -54,6 +54,28 @@ public class RewriteExtension {
 
     private int sizeThresholdMb = 10;
 
+    private int parallelism = 1;
+
+    private boolean diskBackedSourceSet;
+
+    private int sourceSetMemoryBudgetMb = 512;
+
+    private boolean cacheParsedSources;
+
+    private int typeCacheMaxEntries = 1_000_000;
+
+    private boolean warmDaemon;
+
+    private boolean cacheResolvedDependencies;
+
+    private boolean parseOnlyAffectedSources;
+
+    private int autodetectMaxSamples;
+
+    private boolean cacheDetectedStyles;
+
+    private boolean streamRecipeRun;
+
     @Nullable
     private String rewriteVersion;
 
@@ -143,6 +165,12 @@ public class RewriteExtension {
         return metricsUri;
     }
 
+    /**
+     * Either {@code LOG}, to log the rewrite metrics when each task finishes, or any other value to record them into
+     * the registry of the {@code org.openrewrite.rewrite-metrics} plugin, which publishes them to its own
+     * {@code rewriteMetrics.metricsUri} along with the metrics of the JVM. That plugin must be applied to the root
+     * project: without it, any value other than {@code LOG} publishes nothing, and a warning says so once per build.
+     */
     public void setMetricsUri(String value) {
         metricsUri = value;
     }
@@ -358,6 +386,158 @@ public class RewriteExtension {
         this.sizeThresholdMb = thresholdMb;
     }
 
+    /**
+     * The number of threads rewrite may use to parse the projects of a multi-project build concurrently.
+     * Sources are still discovered project by project and the parsed sources are reported in the same order
+     * regardless of this setting. Defaults to 1, which parses every project on the build thread.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Whether parsed sources should be kept on local disk under the build directory while recipes run, rather than
+     * all being held in memory. Useful for repositories too large to run with the available heap, at the cost of
+     * serializing every source file once and reading back those which don't fit in {@link #getSourceSetMemoryBudgetMb()}.
+     */
+    public boolean isDiskBackedSourceSet() {
+        return diskBackedSourceSet;
+    }
+
+    public void setDiskBackedSourceSet(boolean diskBackedSourceSet) {
+        this.diskBackedSourceSet = diskBackedSourceSet;
+    }
+
+    /**
+     * Approximately how much memory, in megabytes, the most recently used sources may occupy when
+     * {@link #isDiskBackedSourceSet()} is enabled. Sources beyond this budget are read back from disk on demand.
+     */
+    public int getSourceSetMemoryBudgetMb() {
+        return sourceSetMemoryBudgetMb;
+    }
+
+    public void setSourceSetMemoryBudgetMb(int sourceSetMemoryBudgetMb) {
+        this.sourceSetMemoryBudgetMb = sourceSetMemoryBudgetMb;
+    }
+
+    /**
+     * Whether the LSTs of parsed sources should be kept under the build directory and read back on subsequent runs
+     * for sources which haven't changed, rather than parsing them again. A Java, Kotlin or Groovy source is only read
+     * back when no other source in its source set and nothing on its classpath has changed either.
+     */
+    public boolean isCacheParsedSources() {
+        return cacheParsedSources;
+    }
+
+    public void setCacheParsedSources(boolean cacheParsedSources) {
+        this.cacheParsedSources = cacheParsedSources;
+    }
+
+    /**
+     * The parsers of each source set share a cache of the types they attribute, which is kept across builds when
+     * {@link #isWarmDaemon()} is set. Once the caches together hold more than this many types, the least recently used
+     * ones are released.
+     */
+    public int getTypeCacheMaxEntries() {
+        return typeCacheMaxEntries;
+    }
+
+    public void setTypeCacheMaxEntries(int typeCacheMaxEntries) {
+        this.typeCacheMaxEntries = typeCacheMaxEntries;
+    }
+
+    /**
+     * Whether the activated recipes, idle parsers, shared type caches and git provenance should stay in the Gradle
+     * daemon once a rewrite task completes, so that the next invocation in the same daemon starts warm rather than
+     * loading recipes and bootstrapping parsers from scratch. Parsers and type caches are dropped for any classpath
+     * which has changed since, recipes when the configuration file changes and git provenance when HEAD moves.
+     * Run with {@code -Prewrite.invalidateWarmDaemon} to discard everything that was kept.
+     */
+    public boolean isWarmDaemon() {
+        return warmDaemon;
+    }
+
+    public void setWarmDaemon(boolean warmDaemon) {
+        this.warmDaemon = warmDaemon;
+    }
+
+    public boolean isInvalidateWarmDaemon() {
+        return project.getProperties().containsKey("rewrite.invalidateWarmDaemon");
+    }
+
+    /**
+     * Whether the files the rewrite classpath resolves to should be remembered under the Gradle user home, so that
+     * builds which request exactly the same fixed versions of rewrite and its recipe modules skip resolving them.
+     * Classpaths requesting dynamic or snapshot versions are always resolved.
+     * <p>
+     * Off by default. Remembered files are reused without Gradle resolving them, so dependency verification is not
+     * applied to them, and changes to the repositories, to dependency substitutions or resolution rules, or to the
+     * dynamic versions of transitive dependencies are only picked up once a remembered file no longer exists.
+     */
+    public boolean isCacheResolvedDependencies() {
+        return cacheResolvedDependencies;
+    }
+
+    public void setCacheResolvedDependencies(boolean cacheResolvedDependencies) {
+        this.cacheResolvedDependencies = cacheResolvedDependencies;
+    }
+
+    /**
+     * Whether to leave unparsed the sources of any language which none of the active recipes visit, such as every
+     * Java source when only YAML files are to be changed. Recipes whose visitors may visit sources of any language
+     * cause every source to be parsed. Off by default, as which languages a recipe visits is worked out from the types
+     * of its visitors, and a recipe which decides what to visit in some other way would silently change nothing.
+     */
+    public boolean isParseOnlyAffectedSources() {
+        return parseOnlyAffectedSources;
+    }
+
+    public void setParseOnlyAffectedSources(boolean parseOnlyAffectedSources) {
+        this.parseOnlyAffectedSources = parseOnlyAffectedSources;
+    }
+
+    /**
+     * The most sources of each language sampled to detect the formatting style of a repository. Sampling stops sooner
+     * once further samples no longer change the detected style. 0, the default, samples every source, as a style
+     * detected from fewer sources may differ from the one detected from all of them.
+     */
+    public int getAutodetectMaxSamples() {
+        return autodetectMaxSamples;
+    }
+
+    public void setAutodetectMaxSamples(int autodetectMaxSamples) {
+        this.autodetectMaxSamples = autodetectMaxSamples;
+    }
+
+    /**
+     * Whether the styles detected from a repository's sources should be kept under {@code build/rewrite}, and reused
+     * by later runs for as long as none of the sources they were detected from have changed. Off by default.
+     */
+    public boolean isCacheDetectedStyles() {
+        return cacheDetectedStyles;
+    }
+
+    public void setCacheDetectedStyles(boolean cacheDetectedStyles) {
+        this.cacheDetectedStyles = cacheDetectedStyles;
+    }
+
+    /**
+     * Whether to run the active recipes over sources in small batches as soon as they are parsed, rather than parsing
+     * every source first, so that parsing and running recipes overlap and only the sources being worked on are kept on
+     * the heap. Recipes which include a scanning recipe, and runs exporting data tables, always parse every source first.
+     */
+    public boolean isStreamRecipeRun() {
+        return streamRecipeRun;
+    }
+
+    public void setStreamRecipeRun(boolean streamRecipeRun) {
+        this.streamRecipeRun = streamRecipeRun;
+    }
+
     public String getJacksonModuleKotlinVersion() {
         return getVersionProps().getProperty("com.fasterxml.jackson.module:jackson-module-kotlin");
     }
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.gradle;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.specs.Specs;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.options.Option;
+import org.jspecify.annotations.Nullable;
+
+import javax.inject.Inject;
+import java.nio.file.Path;
+
+public class RewritePerfReportTask extends AbstractRewriteTask {
+
+    private static final Logger logger = Logging.getLogger(RewritePerfReportTask.class);
+
+    @Nullable
+    private String baseline;
+    private int regressionThreshold = 20;
+    private boolean failOnRegression;
+    private boolean updateBaseline;
+    private boolean writeBack;
+
+    @OutputFile
+    public Path getReportPath() {
+        return getReportsDirectory().resolve("perf.json");
+    }
+
+    @Internal
+    public Path getBaselinePath() {
+        if (baseline != null) {
+            return getProject().file(baseline).toPath();
+        }
+        return getReportsDirectory().resolve("perf-baseline.json");
+    }
+
+    @Option(description = "The performance report to compare with, by default build/reports/rewrite/perf-baseline.json. " +
+                          "This run's report is stored there when there is none yet.", option = "baseline")
+    public void setBaseline(String baseline) {
+        this.baseline = baseline;
+    }
+
+    @Input
+    public int getRegressionThreshold() {
+        return regressionThreshold;
+    }
+
+    @Option(description = "How many percent longer than in the baseline a phase may take, by default 20.", option = "regressionThreshold")
+    public void setRegressionThreshold(String regressionThreshold) {
+        this.regressionThreshold = Integer.parseInt(regressionThreshold);
+    }
+
+    @Input
+    public boolean isFailOnRegression() {
+        return failOnRegression;
+    }
+
+    @Option(description = "Fail, rather than warn, when a phase took longer than the regression threshold allows.", option = "failOnRegression")
+    public void setFailOnRegression(boolean failOnRegression) {
+        this.failOnRegression = failOnRegression;
+    }
+
+    @Input
+    public boolean isUpdateBaseline() {
+        return updateBaseline;
+    }
+
+    @Option(description = "Replace the baseline with this run's report.", option = "updateBaseline")
+    public void setUpdateBaseline(boolean updateBaseline) {
+        this.updateBaseline = updateBaseline;
+    }
+
+    @Input
+    public boolean isWriteBack() {
+        return writeBack;
+    }
+
+    @Option(description = "Write the results back to the sources, as rewriteRun does, rather than to a patch, so that " +
+                          "the writeBack phase is measured.", option = "writeBack")
+    public void setWriteBack(boolean writeBack) {
+        this.writeBack = writeBack;
+    }
+
+    private Path getReportsDirectory() {
+        return getProjectLayout()
+                .getBuildDirectory()
+                .get()
+                .getAsFile()
+                .toPath()
+                .resolve("reports")
+                .resolve("rewrite");
+    }
+
+    @Inject
+    public RewritePerfReportTask() {
+        setGroup("rewrite");
+        setDescription("Run the active refactoring recipes, reporting the time taken by each phase and comparing it with an earlier run. " +
+                       "As with rewriteDryRun, changes are written to a patch, unless --writeBack is given to apply them to the sources as rewriteRun does.");
+        getOutputs().upToDateWhen(Specs.SATISFIES_NONE);
+    }
+
+    @TaskAction
+    public void run() {
+        getProjectParser().perfReport(getReportPath(), getBaselinePath(), regressionThreshold, failOnRegression,
+                updateBaseline, writeBack, throwable -> logger.info("Error during rewrite performance report", throwable));
+    }
+}
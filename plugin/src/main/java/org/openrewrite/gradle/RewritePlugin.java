@@ -35,6 +35,7 @@ import org.gradle.api.tasks.TaskProvider;
 import org.jspecify.annotations.Nullable;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Set;
@@ -85,6 +86,12 @@ public class RewritePlugin implements Plugin<Project> {
             task.dependsOn(rewriteConf);
         });
 
+        TaskProvider<RewritePerfReportTask> rewritePerfReport = project.getTasks().register("rewritePerfReport", RewritePerfReportTask.class, task -> {
+            task.setExtension(extension);
+            task.setResolvedDependencies(resolvedDependenciesProvider);
+            task.dependsOn(rewriteConf);
+        });
+
         TaskProvider<RewriteDiscoverTask> rewriteDiscover = project.getTasks().register("rewriteDiscover", RewriteDiscoverTask.class, task -> {
             task.setExtension(extension);
             task.setResolvedDependencies(resolvedDependenciesProvider);
@@ -92,13 +99,14 @@ public class RewritePlugin implements Plugin<Project> {
         });
 
         if (isRootProject) {
-            project.allprojects(subproject -> configureProject(subproject, extension, rewriteDryRun, rewriteRun));
+            project.allprojects(subproject -> configureProject(subproject, extension, rewriteDryRun, rewriteRun, rewritePerfReport));
         } else {
-            configureProject(project, extension, rewriteDryRun, rewriteRun);
+            configureProject(project, extension, rewriteDryRun, rewriteRun, rewritePerfReport);
         }
     }
 
-    private static void configureProject(Project project, RewriteExtension extension, TaskProvider<RewriteDryRunTask> rewriteDryRun, TaskProvider<RewriteRunTask> rewriteRun) {
+    private static void configureProject(Project project, RewriteExtension extension, TaskProvider<RewriteDryRunTask> rewriteDryRun, TaskProvider<RewriteRunTask> rewriteRun,
+                                         TaskProvider<RewritePerfReportTask> rewritePerfReport) {
         // DomainObjectCollection.all() accepts a function to be applied to both existing and subsequently added members of the collection
         // Do not replace all() with any form of collection iteration which does not share this important property
         project.getPlugins().all(plugin -> {
@@ -128,6 +136,7 @@ public class RewritePlugin implements Plugin<Project> {
                 TaskProvider<Task> compileTask = project.getTasks().named(sourceSet.getCompileJavaTaskName());
                 rewriteRun.configure(task -> task.dependsOn(compileTask));
                 rewriteDryRun.configure(task -> task.dependsOn(compileTask));
+                rewritePerfReport.configure(task -> task.dependsOn(compileTask));
             });
 
             // Detect SourceSets which overlap other sourceSets and disable the compilation task of the overlapping
@@ -159,6 +168,22 @@ public class RewritePlugin implements Plugin<Project> {
                     knownRewriteDependencies(extension, project.getDependencies()),
                     rewriteConf.getDependencies().stream()
             ).toArray(Dependency[]::new);
+
+            ResolvedDependencyCache cache = null;
+            String cacheKey = null;
+            if (extension.isCacheResolvedDependencies()) {
+                cache = new ResolvedDependencyCache(project.getGradle().getGradleUserHomeDir().toPath()
+                        .resolve("caches/rewrite/resolved-dependencies"));
+                cacheKey = ResolvedDependencyCache.key(Arrays.asList(dependencies), project.getGradle().getGradleVersion());
+                if (cacheKey != null) {
+                    resolvedDependencies = cache.read(cacheKey);
+                    if (resolvedDependencies != null) {
+                        project.getLogger().info("Using the rewrite classpath resolved by an earlier build");
+                        return resolvedDependencies;
+                    }
+                }
+            }
+
             // By using a detached configuration, we separate this dependency resolution from the rest of the project's
             // configuration. This also means that Gradle has no criteria with which to select between variants of
             // dependencies which expose differing capabilities. So those must be manually configured
@@ -185,6 +210,9 @@ public class RewritePlugin implements Plugin<Project> {
             }
 
             resolvedDependencies = detachedConf.resolve();
+            if (cache != null && cacheKey != null) {
+                cache.write(cacheKey, resolvedDependencies);
+            }
         }
         return resolvedDependencies;
     }
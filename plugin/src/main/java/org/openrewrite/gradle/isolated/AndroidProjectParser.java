@@ -32,21 +32,21 @@ import org.openrewrite.java.JavaParser;
 import org.openrewrite.java.internal.JavaTypeCache;
 import org.openrewrite.java.marker.JavaSourceSet;
 import org.openrewrite.java.marker.JavaVersion;
+import org.openrewrite.java.tree.J;
 import org.openrewrite.kotlin.KotlinParser;
+import org.openrewrite.kotlin.tree.K;
 import org.openrewrite.polyglot.OmniParser;
 import org.openrewrite.polyglot.ProgressBar;
 import org.openrewrite.polyglot.SourceFileStream;
 import org.openrewrite.style.NamedStyles;
 import org.openrewrite.tree.ParsingExecutionContextView;
 
-import java.io.IOException;
-import java.io.UncheckedIOException;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
 import java.util.*;
-import java.util.function.Supplier;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -69,7 +69,10 @@ class AndroidProjectParser {
                                             Set<Path> alreadyParsed,
                                             Collection<PathMatcher> exclusions,
                                             ExecutionContext ctx,
-                                            OmniParser omniParser) {
+                                            FileIndex fileIndex,
+                                            OmniParser omniParser,
+                                            ParsePlan parsePlan,
+                                            Function<Path, List<Path>> acceptedResources) {
         SourceFileStream sourceFileStream = SourceFileStream.build(
                 project.getPath(),
                 projectName -> progressBar.intermediateResult(":" + projectName));
@@ -89,27 +92,18 @@ class AndroidProjectParser {
                 Set<Path> javaAndKotlinPaths = javaAndKotlinDirectories.stream()
                         .filter(Files::exists)
                         .filter(dir -> !alreadyParsed.contains(dir))
-                        .flatMap(dir -> {
-                            try {
-                                return Files.walk(dir);
-                            } catch (IOException e) {
-                                throw new UncheckedIOException(e);
-                            }
-                        })
-                        .filter(Files::isRegularFile)
+                        .flatMap(dir -> fileIndex.filesUnder(dir).stream())
                         .map(Path::toAbsolutePath)
                         .map(Path::normalize)
                         .filter(path -> !alreadyParsed.contains(path))
                         .collect(Collectors.toSet());
 
-                List<Path> javaPaths = javaAndKotlinPaths.stream()
+                List<Path> javaPaths = parsePlan.sourcesToParse(J.CompilationUnit.class, javaAndKotlinPaths.stream()
                         .filter(path -> path.toString().endsWith(".java"))
-                        .collect(Collectors.toList());
-                List<Path> kotlinPaths = javaAndKotlinPaths.stream()
+                        .collect(Collectors.toList()), alreadyParsed);
+                List<Path> kotlinPaths = parsePlan.sourcesToParse(K.CompilationUnit.class, javaAndKotlinPaths.stream()
                         .filter(path -> path.toString().endsWith(".kt"))
-                        .collect(Collectors.toList());
-
-                JavaTypeCache javaTypeCache = new JavaTypeCache();
+                        .collect(Collectors.toList()), alreadyParsed);
 
                 // The compilation classpath doesn't include the transitive dependencies
                 // The runtime classpath doesn't include compile only dependencies, e.g.: lombok, servlet-api
@@ -127,6 +121,12 @@ class AndroidProjectParser {
                             sourceSetName,
                             e);
                 }
+                String typeCacheSourceSet = project.getPath() + ':' + variant.getName() + ':' + sourceSetName;
+                if (rewriteExtension.isWarmDaemon()) {
+                    WarmState.dropIfChanged(project.getGradle(), typeCacheSourceSet, dependencyPaths, javaAndKotlinPaths);
+                }
+                JavaTypeCache javaTypeCache = TypeCacheRegistry.forSourceSet(typeCacheSourceSet, dependencyPaths,
+                        rewriteExtension.getTypeCacheMaxEntries());
 
                 if (!javaPaths.isEmpty()) {
                     alreadyParsed.addAll(javaPaths);
@@ -166,7 +166,7 @@ class AndroidProjectParser {
                 for (Path resourcesDir : variant.getResourcesDirectories(sourceSetName)) {
                     if (Files.exists(resourcesDir) && !alreadyParsed.contains(resourcesDir)) {
                         Set<Path> accepted =
-                                omniParser.acceptedPaths(baseDir, resourcesDir)
+                                acceptedResources.apply(resourcesDir)
                                         .stream()
                                         .filter(path -> !alreadyParsed.contains(path))
                                         .collect(Collectors.toSet());
@@ -273,12 +273,15 @@ class AndroidProjectParser {
                                               JavaTypeCache javaTypeCache) {
         ParsingExecutionContextView.view(ctx).setCharset(javaSourceCharset);
 
-        return Stream.of((Supplier<JavaParser>) () -> JavaParser.fromJavaVersion()
-                .classpath(dependencyPaths)
-                .styles(styles)
-                .typeCache(javaTypeCache)
-                .logCompilationWarningsAndErrors(rewriteExtension.getLogCompilationWarningsAndErrors())
-                .build()).map(Supplier::get).flatMap(jp -> jp.parse(javaPaths, baseDir, ctx)).map(cu -> {
+        return ParserPool.parse(
+                parserKey("java", dependencyPaths, javaVersion, javaSourceCharset, javaTypeCache),
+                () -> JavaParser.fromJavaVersion()
+                        .classpath(dependencyPaths)
+                        .styles(styles)
+                        .typeCache(javaTypeCache)
+                        .logCompilationWarningsAndErrors(rewriteExtension.getLogCompilationWarningsAndErrors())
+                        .build(),
+                jp -> jp.parse(javaPaths, baseDir, ctx)).map(cu -> {
             if (DefaultProjectParser.isExcluded(exclusions, cu.getSourcePath()) || cu.getSourcePath()
                     .startsWith(buildDir)) {
                 return null;
@@ -297,12 +300,15 @@ class AndroidProjectParser {
                                                 JavaTypeCache javaTypeCache) {
         ParsingExecutionContextView.view(ctx).setCharset(javaSourceCharset);
 
-        return Stream.of((Supplier<KotlinParser>) () -> KotlinParser.builder()
-                .classpath(dependencyPaths)
-                .styles(styles)
-                .typeCache(javaTypeCache)
-                .logCompilationWarningsAndErrors(rewriteExtension.getLogCompilationWarningsAndErrors())
-                .build()).map(Supplier::get).flatMap(kp -> kp.parse(kotlinPaths, baseDir, ctx)).map(cu -> {
+        return ParserPool.parse(
+                parserKey("kotlin", dependencyPaths, javaVersion, javaSourceCharset, javaTypeCache),
+                () -> KotlinParser.builder()
+                        .classpath(dependencyPaths)
+                        .styles(styles)
+                        .typeCache(javaTypeCache)
+                        .logCompilationWarningsAndErrors(rewriteExtension.getLogCompilationWarningsAndErrors())
+                        .build(),
+                kp -> kp.parse(kotlinPaths, baseDir, ctx)).map(cu -> {
             if (DefaultProjectParser.isExcluded(exclusions, cu.getSourcePath()) || cu.getSourcePath()
                     .startsWith(buildDir)) {
                 return null;
@@ -310,4 +316,24 @@ class AndroidProjectParser {
             return cu;
         }).filter(Objects::nonNull).map(it -> it.withMarkers(it.getMarkers().add(javaVersion)));
     }
+
+    /**
+     * Android parsers are also configured with the active styles, so they are never shared with the parsers of
+     * other kinds of projects.
+     */
+    private List<Object> parserKey(String language,
+                                   Collection<Path> classpath,
+                                   JavaVersion javaVersion,
+                                   Charset charset,
+                                   JavaTypeCache javaTypeCache) {
+        return Arrays.asList(
+                "android-" + language,
+                new HashSet<>(classpath),
+                javaVersion.getSourceCompatibility(),
+                javaVersion.getTargetCompatibility(),
+                charset,
+                rewriteExtension.getLogCompilationWarningsAndErrors(),
+                styles,
+                javaTypeCache);
+    }
 }
@@ -51,8 +51,8 @@ import org.openrewrite.gradle.marker.GradleProjectBuilder;
 import org.openrewrite.gradle.marker.GradleSettings;
 import org.openrewrite.gradle.marker.GradleSettingsBuilder;
 import org.openrewrite.groovy.GroovyParser;
+import org.openrewrite.groovy.tree.G;
 import org.openrewrite.internal.InMemoryLargeSourceSet;
-import org.openrewrite.internal.ListUtils;
 import org.openrewrite.internal.StringUtils;
 import org.openrewrite.java.JavaParser;
 import org.openrewrite.java.internal.JavaTypeCache;
@@ -71,24 +71,32 @@ import org.openrewrite.quark.Quark;
 import org.openrewrite.quark.QuarkParser;
 import org.openrewrite.remote.Remote;
 import org.openrewrite.style.NamedStyles;
+import org.openrewrite.text.PlainText;
 import org.openrewrite.text.PlainTextParser;
 import org.openrewrite.tree.ParsingEventListener;
 import org.openrewrite.tree.ParsingExecutionContextView;
-import org.openrewrite.xml.tree.Xml;
 
 import java.io.*;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
-import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -102,6 +110,18 @@ public class DefaultProjectParser implements GradleProjectParser {
     private static final String LOG_INDENT_INCREMENT = "    ";
 
     private static final Logger logger = Logging.getLogger(DefaultProjectParser.class);
+
+    /**
+     * How many parsed sources of a project may wait for the consumer when projects are parsed in parallel.
+     */
+    private static final int PARSE_HANDOFF_CAPACITY = 64;
+
+    /**
+     * The name of a property referred to by a placeholder in the rewrite configuration, as in {@code ${name}} or
+     * {@code ${name:default}}.
+     */
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\$\\{([^}:$]+)");
+
     private final AtomicBoolean firstWarningLogged = new AtomicBoolean(false);
     protected final Path baseDir;
     protected final RewriteExtension extension;
@@ -114,13 +134,46 @@ public class DefaultProjectParser implements GradleProjectParser {
     @Nullable
     private Environment environment;
 
+    @Nullable
+    private List<Object> environmentKey;
+
+    @Nullable
+    private RecipeCatalog recipeCatalog;
+
     @Nullable
     private AndroidProjectParser androidProjectParser;
 
+    @Nullable
+    private final LstCache lstCache;
+
+    @Nullable
+    private GradleScriptClasspaths gradleScriptClasspaths;
+
+    @Nullable
+    private FileIndex fileIndex;
+
+    /**
+     * Which sources are worth parsing for the recipes being run, or every source when only listing them.
+     */
+    private ParsePlan parsePlan = ParsePlan.everything();
+
+    private final PhaseTimings timings = new PhaseTimings();
+
+    private final RewriteMetrics metrics;
+
     public DefaultProjectParser(Project project, RewriteExtension extension) {
         this.baseDir = repositoryRoot(project);
         this.extension = extension;
         this.project = project;
+        this.lstCache = extension.isCacheParsedSources() ?
+                new LstCache(project.getLayout().getBuildDirectory().dir("rewrite/lst-cache").get().getAsFile().toPath(),
+                        baseDir, extension.getRewriteVersion()) :
+                null;
+        if (extension.isInvalidateWarmDaemon()) {
+            WarmState.invalidate(project.getGradle());
+        }
+        EnvironmentCache.enterBuild(project.getGradle(), extension.isWarmDaemon());
+        this.metrics = new RewriteMetrics(extension, project, timings);
 
         BuildEnvironment buildEnvironment = BuildEnvironment.build(System::getenv);
         sharedProvenance = Stream.of(
@@ -153,6 +206,9 @@ public class DefaultProjectParser implements GradleProjectParser {
 
     private @Nullable GitProvenance gitProvenance(Path baseDir, @Nullable BuildEnvironment buildEnvironment) {
         try {
+            if (extension.isWarmDaemon()) {
+                return WarmState.gitProvenance(baseDir, () -> GitProvenance.fromProjectDirectory(baseDir, buildEnvironment));
+            }
             // Computing git provenance can be expensive for repositories with many commits, ensure we do it only once per build
             // To avoid old state being used on accident in new builds on the same daemon, cache is cleared in the shutdown hook
             return REPO_ROOT_TO_PROVENANCE.computeIfAbsent(baseDir, dir -> GitProvenance.fromProjectDirectory(dir, buildEnvironment));
@@ -210,19 +266,19 @@ public class DefaultProjectParser implements GradleProjectParser {
 
     @Override
     public List<String> getAvailableStyles() {
-        return environment().listStyles().stream().map(NamedStyles::getName).collect(toList());
+        return new ArrayList<>(recipeCatalog().getStyles());
     }
 
     @Override
     public void discoverRecipes(ServiceRegistry serviceRegistry) {
-        Collection<RecipeDescriptor> availableRecipeDescriptors = this.listRecipeDescriptors();
+        List<RecipeCatalog.RecipeEntry> availableRecipes = recipeCatalog().getRecipes();
 
         List<String> activeRecipes = getActiveRecipes();
         List<String> availableStyles = getAvailableStyles();
         List<String> activeStyles = getActiveStyles();
 
         logger.quiet("Available Recipes:");
-        for (RecipeDescriptor recipe : availableRecipeDescriptors) {
+        for (RecipeCatalog.RecipeEntry recipe : availableRecipes) {
             logger.quiet(indent(1, recipe.getName()));
         }
 
@@ -245,7 +301,7 @@ public class DefaultProjectParser implements GradleProjectParser {
         }
 
         logger.quiet(indent(0, ""));
-        logger.quiet("Found " + availableRecipeDescriptors.size() + " available recipes and " + availableStyles.size() + " available styles.");
+        logger.quiet("Found " + availableRecipes.size() + " available recipes and " + availableStyles.size() + " available styles.");
         logger.quiet("Configured with " + activeRecipes.size() + " active recipes and " + activeStyles.size() + " active styles.");
     }
 
@@ -253,6 +309,41 @@ public class DefaultProjectParser implements GradleProjectParser {
         return environment().listRecipeDescriptors();
     }
 
+    /**
+     * The recipes and styles available, read from a catalog kept in the Gradle user home for each distinct recipe
+     * classpath and configuration, so that listing them doesn't require instantiating every recipe.
+     */
+    private RecipeCatalog recipeCatalog() {
+        if (recipeCatalog == null) {
+            Set<Path> recipeClasspath = new HashSet<>();
+            ClassLoader classLoader = getClass().getClassLoader();
+            if (classLoader instanceof URLClassLoader) {
+                for (URL url : ((URLClassLoader) classLoader).getURLs()) {
+                    try {
+                        recipeClasspath.add(Paths.get(url.toURI()));
+                    } catch (URISyntaxException | IllegalArgumentException e) {
+                        logger.debug("Unable to fingerprint recipe classpath entry {}", url, e);
+                    }
+                }
+            }
+            String catalogKey = extension.getRewriteVersion() + '\n' +
+                                environmentKey(gradleProperties()) + '\n' +
+                                LstCache.describeClasspath(recipeClasspath);
+            String catalogName;
+            try {
+                catalogName = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                        MessageDigest.getInstance("SHA-256").digest(catalogKey.getBytes(StandardCharsets.UTF_8)));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+            Path catalogFile = project.getGradle().getGradleUserHomeDir().toPath()
+                    .resolve("caches/rewrite/recipe-catalog")
+                    .resolve(catalogName + ".json");
+            recipeCatalog = RecipeCatalog.load(catalogFile, this::environment);
+        }
+        return recipeCatalog;
+    }
+
     private static String indent(int indent, CharSequence content) {
         StringBuilder prefix = repeat(indent);
         return prefix.append(content).toString();
@@ -269,8 +360,10 @@ public class DefaultProjectParser implements GradleProjectParser {
     @Override
     public Collection<Path> listSources() {
         // Use a sorted collection so that gradle input detection isn't thrown off by ordering
-        Set<Path> result = new TreeSet<>(omniParser(emptySet(), project).acceptedPaths(
-                baseDir,
+        Set<Path> result = new TreeSet<>(acceptedPaths(
+                omniParser(emptySet(), project),
+                emptySet(),
+                project,
                 project.getProjectDir().toPath()));
         if (isAndroidProject(project)) {
             getAndroidProjectParser().findSourceDirectories(project)
@@ -310,14 +403,17 @@ public class DefaultProjectParser implements GradleProjectParser {
                         ctx.setParsingListener(new ParsingEventListener() {
                             @Override
                             public void parsed(Parser.Input input, SourceFile sourceFile) {
-                                try {
-                                    logWriter.write(input.getPath() + ",");
-                                    logWriter.write(meterRegistry.get("jvm.gc.overhead").gauge().value() + ",");
-                                    Gauge g1Used = meterRegistry.find("jvm.memory.used").tag("id", "G1 Old Gen").gauge();
-                                    logWriter.write((g1Used == null ? "" : Double.toString(g1Used.value())) + "\n");
-                                } catch (IOException e) {
-                                    logger.error("Unable to write rewrite GC log");
-                                    throw new UncheckedIOException(e);
+                                // Projects may be parsed concurrently, keep each line of the log intact
+                                synchronized (logWriter) {
+                                    try {
+                                        logWriter.write(input.getPath() + ",");
+                                        logWriter.write(meterRegistry.get("jvm.gc.overhead").gauge().value() + ",");
+                                        Gauge g1Used = meterRegistry.find("jvm.memory.used").tag("id", "G1 Old Gen").gauge();
+                                        logWriter.write((g1Used == null ? "" : Double.toString(g1Used.value())) + "\n");
+                                    } catch (IOException e) {
+                                        logger.error("Unable to write rewrite GC log");
+                                        throw new UncheckedIOException(e);
+                                    }
                                 }
                             }
                         });
@@ -335,77 +431,122 @@ public class DefaultProjectParser implements GradleProjectParser {
         }
     }
 
-    public void dryRun(Path reportPath, ResultsContainer results) {
-        try {
-            RuntimeException firstException = results.getFirstException();
-            if (firstException != null) {
-                logger.error("The recipe produced an error. Please report this to the recipe author.");
-                throw firstException;
-            }
-
-            if (results.isNotEmpty()) {
-                Duration estimateTimeSaved = Duration.ZERO;
-                for (Result result : results.generated) {
-                    assert result.getAfter() != null;
-                    logger.warn("These recipes would generate new file {}:", result.getAfter().getSourcePath());
-                    logRecipesThatMadeChanges(result);
-                    estimateTimeSaved = estimateTimeSavedSum(result, estimateTimeSaved);
-                }
-                for (Result result : results.deleted) {
-                    assert result.getBefore() != null;
-                    logger.warn("These recipes would delete file {}:", result.getBefore().getSourcePath());
-                    logRecipesThatMadeChanges(result);
-                    estimateTimeSaved = estimateTimeSavedSum(result, estimateTimeSaved);
-                }
-                for (Result result : results.moved) {
-                    assert result.getBefore() != null;
-                    assert result.getAfter() != null;
-                    logger.warn("These recipes would move file from {} to {}:", result.getBefore().getSourcePath(), result.getAfter().getSourcePath());
-                    logRecipesThatMadeChanges(result);
-                    estimateTimeSaved = estimateTimeSavedSum(result, estimateTimeSaved);
+    /**
+     * Unless {@code writeBack} is set, the patch of the dry run is written next to the report, as {@code perf.patch}.
+     * The report is written however the run ends, with the time taken by the phases which completed.
+     */
+    @Override
+    public void perfReport(Path reportPath, Path baselinePath, int regressionThreshold, boolean failOnRegression,
+                           boolean updateBaseline, boolean writeBack, Consumer<Throwable> onError) {
+        try (PhaseTimings.HeapPeak heapPeak = new PhaseTimings.HeapPeak()) {
+            long start = System.nanoTime();
+            RuntimeException failure = null;
+            try {
+                ExecutionContext ctx = new InMemoryExecutionContext(onError);
+                ResultsContainer results = listResults(ctx);
+                failOnRecipeErrors(results);
+                if (writeBack) {
+                    writeBack(results, ctx);
+                } else {
+                    writePatch(reportPath.resolveSibling("perf.patch"), results);
                 }
-                for (Result result : results.refactoredInPlace) {
-                    assert result.getBefore() != null;
-                    logger.warn("These recipes would make changes to {}:", result.getBefore().getSourcePath());
-                    logRecipesThatMadeChanges(result);
-                    estimateTimeSaved = estimateTimeSavedSum(result, estimateTimeSaved);
+            } catch (RuntimeException e) {
+                failure = e;
+                throw e;
+            } finally {
+                try {
+                    new PerfReport(timings, System.nanoTime() - start, heapPeak.peak(), extension.getRewriteVersion(),
+                            project.getGradle().getGradleVersion(), getActiveRecipes())
+                            .write(reportPath, baselinePath, regressionThreshold, failOnRegression, updateBaseline);
+                } catch (RuntimeException e) {
+                    if (failure == null) {
+                        throw e;
+                    }
+                    failure.addSuppressed(e);
+                } finally {
+                    shutdownRewrite();
                 }
+            }
+        }
+    }
 
-                //noinspection ResultOfMethodCallIgnored
-                reportPath.getParent().toFile().mkdirs();
-                try (BufferedWriter writer = Files.newBufferedWriter(reportPath)) {
-                    Stream.concat(
-                                    Stream.concat(results.generated.stream(), results.deleted.stream()),
-                                    Stream.concat(results.moved.stream(), results.refactoredInPlace.stream()))
-                            // cannot meaningfully display diffs of these things. Console output notes that they were touched by a recipe.
-                            .filter(it -> !(it.getAfter() instanceof Binary) && !(it.getAfter() instanceof Quark))
-                            .map(Result::diff)
-                            .forEach(diff -> {
-                                try {
-                                    writer.write(diff + "\n");
-                                } catch (IOException e) {
-                                    throw new RuntimeException(e);
-                                }
-                            });
-                } catch (Exception e) {
-                    throw new RuntimeException("Unable to generate rewrite result file.", e);
-                }
-                logger.warn("Report available:");
-                logger.warn("    {}", reportPath.normalize());
-                logger.warn("Estimate time saved: {}", formatDuration(estimateTimeSaved));
+    private void failOnRecipeErrors(ResultsContainer results) {
+        RuntimeException firstException = results.getFirstException(extension.getParallelism());
+        if (firstException != null) {
+            logger.error("The recipe produced an error. Please report this to the recipe author.");
+            throw firstException;
+        }
+    }
+
+    public void dryRun(Path reportPath, ResultsContainer results) {
+        try {
+            failOnRecipeErrors(results);
+            if (writePatch(reportPath, results)) {
                 logger.warn("Run 'gradle rewriteRun' to apply the recipes.");
 
                 if (project.getExtensions().getByType(RewriteExtension.class).getFailOnDryRunResults()) {
                     throw new RuntimeException("Applying recipes would make changes. See logs for more details.");
                 }
-            } else {
-                logger.lifecycle("Applying recipes would make no changes. No report generated.");
             }
         } finally {
             shutdownRewrite();
         }
     }
 
+    /**
+     * Write the diff of every result to the patch at {@code reportPath}.
+     *
+     * @return Whether there were any changes to write.
+     */
+    private boolean writePatch(Path reportPath, ResultsContainer results) {
+        if (!results.isNotEmpty()) {
+            logger.lifecycle("Applying recipes would make no changes. No report generated.");
+            return false;
+        }
+
+        Duration estimateTimeSaved = Duration.ZERO;
+        // Each diff is written to the report as soon as it is computed. Which files are changed in place is
+        // decided by the results, so that the report and the counts agree with what rewriteRun would write.
+        try (PatchWriter patchWriter = new PatchWriter(reportPath, timings)) {
+            for (Result result : results.generated) {
+                assert result.getAfter() != null;
+                logger.warn("These recipes would generate new file {}:", result.getAfter().getSourcePath());
+                logRecipesThatMadeChanges(result);
+                estimateTimeSaved = estimateTimeSavedSum(result, estimateTimeSaved);
+                patchWriter.write(result);
+            }
+            for (Result result : results.deleted) {
+                assert result.getBefore() != null;
+                logger.warn("These recipes would delete file {}:", result.getBefore().getSourcePath());
+                logRecipesThatMadeChanges(result);
+                estimateTimeSaved = estimateTimeSavedSum(result, estimateTimeSaved);
+                patchWriter.write(result);
+            }
+            for (Result result : results.moved) {
+                assert result.getBefore() != null;
+                assert result.getAfter() != null;
+                logger.warn("These recipes would move file from {} to {}:", result.getBefore().getSourcePath(), result.getAfter().getSourcePath());
+                logRecipesThatMadeChanges(result);
+                estimateTimeSaved = estimateTimeSavedSum(result, estimateTimeSaved);
+                patchWriter.write(result);
+            }
+            for (Result result : results.getRefactoredInPlace()) {
+                assert result.getBefore() != null;
+                logger.warn("These recipes would make changes to {}:", result.getBefore().getSourcePath());
+                logRecipesThatMadeChanges(result);
+                estimateTimeSaved = estimateTimeSavedSum(result, estimateTimeSaved);
+                patchWriter.write(result);
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to generate rewrite result file.", e);
+        }
+
+        logger.warn("Report available:");
+        logger.warn("    {}", reportPath.normalize());
+        logger.warn("Estimate time saved: {}", formatDuration(estimateTimeSaved));
+        return true;
+    }
+
     private static String formatDuration(Duration duration) {
         return duration.toString()
                 .substring(2)
@@ -422,116 +563,160 @@ public class DefaultProjectParser implements GradleProjectParser {
 
     public void run(ResultsContainer results, ExecutionContext ctx) {
         try {
-            if (results.isNotEmpty()) {
-                Duration estimateTimeSaved = Duration.ZERO;
-                RuntimeException firstException = results.getFirstException();
-                if (firstException != null) {
-                    logger.error("The recipe produced an error. Please report this to the recipe author.");
-                    throw firstException;
-                }
+            writeBack(results, ctx);
+        } finally {
+            shutdownRewrite();
+        }
+    }
+
+    /**
+     * Apply the results to the sources on disk.
+     */
+    private void writeBack(ResultsContainer results, ExecutionContext ctx) {
+        if (results.isNotEmpty()) {
+            Duration estimateTimeSaved = Duration.ZERO;
+            failOnRecipeErrors(results);
+
+            for (Result result : results.generated) {
+                assert result.getAfter() != null;
+                logger.lifecycle("Generated new file " +
+                                 result.getAfter().getSourcePath() +
+                                 " by:");
+                logRecipesThatMadeChanges(result);
+                estimateTimeSaved = estimateTimeSavedSum(result, estimateTimeSaved);
+            }
+            for (Result result : results.deleted) {
+                assert result.getBefore() != null;
+                logger.lifecycle("Deleted file " +
+                                 result.getBefore().getSourcePath() +
+                                 " by:");
+                logRecipesThatMadeChanges(result);
+                estimateTimeSaved = estimateTimeSavedSum(result, estimateTimeSaved);
+            }
+            for (Result result : results.moved) {
+                assert result.getAfter() != null;
+                assert result.getBefore() != null;
+                logger.lifecycle("File has been moved from " +
+                                 result.getBefore().getSourcePath() + " to " +
+                                 result.getAfter().getSourcePath() + " by:");
+                logRecipesThatMadeChanges(result);
+                estimateTimeSaved = estimateTimeSavedSum(result, estimateTimeSaved);
+            }
+            for (Result result : results.getRefactoredInPlace()) {
+                assert result.getBefore() != null;
+                logger.lifecycle("Changes have been made to " +
+                                 result.getBefore().getSourcePath() +
+                                 " by:");
+                logRecipesThatMadeChanges(result);
+                estimateTimeSaved = estimateTimeSavedSum(result, estimateTimeSaved);
+            }
+
+            logger.lifecycle("Please review and commit the results.");
+
+            logger.lifecycle("Estimate time saved: {}", formatDuration(estimateTimeSaved));
+
+            Path projectRoot = results.getProjectRoot();
+            Map<String, Duration> phaseTimings = new LinkedHashMap<>();
+            long writeBackStart = System.nanoTime();
+            long phaseStart = writeBackStart;
+            try (WorkerPool writers = new WorkerPool("rewrite-write", extension.getParallelism())) {
+                // Phases run one after the other, so that a file generated, deleted or moved by one recipe
+                // ends up in the same state as when each result was written in turn
+                writeAll(writers, results.generated, projectRoot, ctx);
+                phaseStart = recordPhase(phaseTimings, "generate", phaseStart);
 
-                for (Result result : results.generated) {
-                    assert result.getAfter() != null;
-                    logger.lifecycle("Generated new file " +
-                                     result.getAfter().getSourcePath() +
-                                     " by:");
-                    logRecipesThatMadeChanges(result);
-                    estimateTimeSaved = estimateTimeSavedSum(result, estimateTimeSaved);
-                }
                 for (Result result : results.deleted) {
                     assert result.getBefore() != null;
-                    logger.lifecycle("Deleted file " +
-                                     result.getBefore().getSourcePath() +
-                                     " by:");
-                    logRecipesThatMadeChanges(result);
-                    estimateTimeSaved = estimateTimeSavedSum(result, estimateTimeSaved);
+                    Path originalLocation = results.getProjectRoot().resolve(result.getBefore().getSourcePath());
+                    boolean deleteSucceeded = originalLocation.toFile().delete();
+                    if (!deleteSucceeded) {
+                        throw new IOException("Unable to delete file " + originalLocation.toAbsolutePath());
+                    }
                 }
+                phaseStart = recordPhase(phaseTimings, "delete", phaseStart);
+
+                // Directories are prepared and original files removed in order, only the writes happen concurrently
+                List<Result> movedContents = new ArrayList<>(results.moved.size());
                 for (Result result : results.moved) {
-                    assert result.getAfter() != null;
-                    assert result.getBefore() != null;
-                    logger.lifecycle("File has been moved from " +
-                                     result.getBefore().getSourcePath() + " to " +
-                                     result.getAfter().getSourcePath() + " by:");
-                    logRecipesThatMadeChanges(result);
-                    estimateTimeSaved = estimateTimeSavedSum(result, estimateTimeSaved);
-                }
-                for (Result result : results.refactoredInPlace) {
+                    // Should we try to use git to move the file first, and only if that fails fall back to this?
                     assert result.getBefore() != null;
-                    logger.lifecycle("Changes have been made to " +
-                                     result.getBefore().getSourcePath() +
-                                     " by:");
-                    logRecipesThatMadeChanges(result);
-                    estimateTimeSaved = estimateTimeSavedSum(result, estimateTimeSaved);
-                }
-
-                logger.lifecycle("Please review and commit the results.");
+                    Path originalLocation = results.getProjectRoot().resolve(result.getBefore().getSourcePath());
+                    File originalParentDir = originalLocation.toFile().getParentFile();
 
-                logger.lifecycle("Estimate time saved: {}", formatDuration(estimateTimeSaved));
-
-                try {
-                    for (Result result : results.generated) {
-                        writeAfter(results.getProjectRoot(), result, ctx);
-                    }
-                    for (Result result : results.deleted) {
-                        assert result.getBefore() != null;
-                        Path originalLocation = results.getProjectRoot().resolve(result.getBefore().getSourcePath());
-                        boolean deleteSucceeded = originalLocation.toFile().delete();
-                        if (!deleteSucceeded) {
-                            throw new IOException("Unable to delete file " + originalLocation.toAbsolutePath());
-                        }
-                    }
-                    for (Result result : results.moved) {
-                        // Should we try to use git to move the file first, and only if that fails fall back to this?
-                        assert result.getBefore() != null;
-                        Path originalLocation = results.getProjectRoot().resolve(result.getBefore().getSourcePath());
-                        File originalParentDir = originalLocation.toFile().getParentFile();
-
-                        assert result.getAfter() != null;
-                        // Ensure directories exist in case something was moved into a hitherto nonexistent package
-                        Path afterLocation = results.getProjectRoot().resolve(result.getAfter().getSourcePath());
-                        File afterParentDir = afterLocation.toFile().getParentFile();
-                        // Rename the directory if its name case has been changed, e.g. camel case to lower case.
-                        if (afterParentDir.exists() &&
-                            afterParentDir.getAbsolutePath().equalsIgnoreCase((originalParentDir.getAbsolutePath())) &&
-                            !afterParentDir.getAbsolutePath().equals(originalParentDir.getAbsolutePath())) {
-                            if (!originalParentDir.renameTo(afterParentDir)) {
-                                throw new RuntimeException("Unable to rename directory from " + originalParentDir.getAbsolutePath() + " To: " + afterParentDir.getAbsolutePath());
-                            }
-                        } else if (!afterParentDir.exists() && !afterParentDir.mkdirs()) {
-                            throw new RuntimeException("Unable to create directory " + afterParentDir.getAbsolutePath());
-                        }
-                        if (result.getAfter() instanceof Quark) {
-                            // We don't know the contents of a Quark, but we can move it
-                            Files.move(originalLocation, results.getProjectRoot().resolve(result.getAfter().getSourcePath()));
-                        } else {
-                            // On Mac this can return "false" even when the file was deleted, so skip the check
-                            //noinspection ResultOfMethodCallIgnored
-                            originalLocation.toFile().delete();
-                            writeAfter(results.getProjectRoot(), result, ctx);
+                    assert result.getAfter() != null;
+                    // Ensure directories exist in case something was moved into a hitherto nonexistent package
+                    Path afterLocation = results.getProjectRoot().resolve(result.getAfter().getSourcePath());
+                    File afterParentDir = afterLocation.toFile().getParentFile();
+                    // Rename the directory if its name case has been changed, e.g. camel case to lower case.
+                    if (afterParentDir.exists() &&
+                        afterParentDir.getAbsolutePath().equalsIgnoreCase((originalParentDir.getAbsolutePath())) &&
+                        !afterParentDir.getAbsolutePath().equals(originalParentDir.getAbsolutePath())) {
+                        if (!originalParentDir.renameTo(afterParentDir)) {
+                            throw new RuntimeException("Unable to rename directory from " + originalParentDir.getAbsolutePath() + " To: " + afterParentDir.getAbsolutePath());
                         }
+                    } else if (!afterParentDir.exists() && !afterParentDir.mkdirs()) {
+                        throw new RuntimeException("Unable to create directory " + afterParentDir.getAbsolutePath());
                     }
-
-                    for (Result result : results.refactoredInPlace) {
-                        writeAfter(results.getProjectRoot(), result, ctx);
+                    if (result.getAfter() instanceof Quark) {
+                        // We don't know the contents of a Quark, but we can move it
+                        Files.move(originalLocation, results.getProjectRoot().resolve(result.getAfter().getSourcePath()));
+                    } else {
+                        // On Mac this can return "false" even when the file was deleted, so skip the check
+                        //noinspection ResultOfMethodCallIgnored
+                        originalLocation.toFile().delete();
+                        movedContents.add(result);
                     }
-                    List<Path> emptyDirectories = results.newlyEmptyDirectories();
-                    if (!emptyDirectories.isEmpty()) {
-                        logger.quiet("Removing {} newly empty directories:",
-                                emptyDirectories.size());
-                        for (Path emptyDirectory : emptyDirectories) {
-                            logger.quiet("  {}", emptyDirectory);
-                            Files.delete(emptyDirectory);
-                        }
+                }
+                writeAll(writers, movedContents, projectRoot, ctx);
+                phaseStart = recordPhase(phaseTimings, "move", phaseStart);
+
+                writeAll(writers, results.getRefactoredInPlace(), projectRoot, ctx);
+                phaseStart = recordPhase(phaseTimings, "write", phaseStart);
+
+                List<Path> emptyDirectories = results.newlyEmptyDirectories();
+                if (!emptyDirectories.isEmpty()) {
+                    logger.quiet("Removing {} newly empty directories:",
+                            emptyDirectories.size());
+                    for (Path emptyDirectory : emptyDirectories) {
+                        logger.quiet("  {}", emptyDirectory);
+                        Files.delete(emptyDirectory);
                     }
-                } catch (IOException e) {
-                    throw new UncheckedIOException("Unable to rewrite source files", e);
                 }
+                recordPhase(phaseTimings, "clean up", phaseStart);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to rewrite source files", e);
+            } finally {
+                timings.record(PhaseTimings.Phase.WRITE_BACK, writeBackStart);
             }
-        } finally {
-            shutdownRewrite();
+            logger.lifecycle("Wrote results in {}", phaseTimings.entrySet().stream()
+                    .map(phase -> phase.getKey() + " " + phase.getValue().toMillis() + "ms")
+                    .collect(joining(", ")));
         }
     }
 
+    /**
+     * Print and write each result on the pool, waiting until all of them have been written.
+     */
+    private static void writeAll(WorkerPool writers, List<Result> results, Path root, ExecutionContext ctx) {
+        if (results.isEmpty()) {
+            return;
+        }
+        List<Callable<Void>> writes = new ArrayList<>(results.size());
+        for (Result result : results) {
+            writes.add(() -> {
+                writeAfter(root, result, ctx);
+                return null;
+            });
+        }
+        writers.invokeAll(writes);
+    }
+
+    private static long recordPhase(Map<String, Duration> phaseTimings, String phase, long phaseStart) {
+        long now = System.nanoTime();
+        phaseTimings.put(phase, Duration.ofNanos(now - phaseStart));
+        return now;
+    }
+
     private static Duration estimateTimeSavedSum(Result result, Duration timeSaving) {
         if (null != result.getTimeSavings()) {
             return timeSaving.plus(result.getTimeSavings());
@@ -595,42 +780,118 @@ public class DefaultProjectParser implements GradleProjectParser {
 
     protected Environment environment() {
         if (environment == null) {
-            Map<Object, Object> gradleProps = project.getProperties().entrySet().stream()
-                    .filter(entry -> entry.getKey() != null && entry.getValue() != null)
-                    .collect(toMap(Map.Entry::getKey, Map.Entry::getValue));
+            Properties properties = gradleProperties();
+            environment = EnvironmentCache.environment(environmentKey(properties), () -> loadEnvironment(properties));
+        }
+        return environment;
+    }
 
-            Properties properties = new Properties();
-            properties.putAll(gradleProps);
+    private Properties gradleProperties() {
+        Map<Object, Object> gradleProps = project.getProperties().entrySet().stream()
+                .filter(entry -> entry.getKey() != null && entry.getValue() != null)
+                .collect(toMap(Map.Entry::getKey, Map.Entry::getValue));
 
-            Environment.Builder env = Environment.builder();
-            env.scanClassLoader(getClass().getClassLoader());
+        Properties properties = new Properties();
+        properties.putAll(gradleProps);
+        return properties;
+    }
 
-            File rewriteConfig = extension.getConfigFile();
-            if (rewriteConfig.exists()) {
-                try (FileInputStream is = new FileInputStream(rewriteConfig)) {
-                    YamlResourceLoader resourceLoader = new YamlResourceLoader(is, rewriteConfig.toURI(), properties, getClass().getClassLoader());
-                    env.load(resourceLoader);
-                } catch (IOException e) {
-                    throw new RuntimeException("Unable to load rewrite configuration", e);
-                }
-            } else if (extension.getConfigFileSetDeliberately()) {
-                logger.warn("Rewrite configuration file {} does not exist.", rewriteConfig);
+    private Environment loadEnvironment(Properties properties) {
+        Environment.Builder env = Environment.builder();
+        env.scanClassLoader(getClass().getClassLoader());
+
+        File rewriteConfig = extension.getConfigFile();
+        if (rewriteConfig.exists()) {
+            try (FileInputStream is = new FileInputStream(rewriteConfig)) {
+                YamlResourceLoader resourceLoader = new YamlResourceLoader(is, rewriteConfig.toURI(), properties, getClass().getClassLoader());
+                env.load(resourceLoader);
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to load rewrite configuration", e);
             }
+        } else if (extension.getConfigFileSetDeliberately()) {
+            logger.warn("Rewrite configuration file {} does not exist.", rewriteConfig);
+        }
+
+        return env.build();
+    }
 
-            environment = env.build();
+    /**
+     * Everything the environment is loaded from: the recipe classpath, the location and content of the
+     * configuration file, and the values of the properties its placeholders refer to. Only those properties are part
+     * of the key, as every project has properties of its own, such as its name and path, which would otherwise keep
+     * projects sharing a configuration from sharing its environment.
+     */
+    private List<Object> environmentKey(Properties properties) {
+        if (environmentKey != null) {
+            return environmentKey;
         }
-        return environment;
+        // Compared as strings, since URL equality may resolve host names
+        List<String> classpath = new ArrayList<>();
+        ClassLoader classLoader = getClass().getClassLoader();
+        if (classLoader instanceof URLClassLoader) {
+            for (URL url : ((URLClassLoader) classLoader).getURLs()) {
+                classpath.add(url.toString());
+            }
+        }
+        File rewriteConfig = extension.getConfigFile();
+        String configPath = "";
+        String configHash = "";
+        Map<String, String> placeholderValues = new TreeMap<>();
+        if (rewriteConfig.exists()) {
+            configPath = rewriteConfig.getAbsolutePath();
+            try {
+                byte[] config = Files.readAllBytes(rewriteConfig.toPath());
+                configHash = Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(config));
+                Matcher placeholder = PLACEHOLDER.matcher(new String(config, StandardCharsets.UTF_8));
+                while (placeholder.find()) {
+                    String name = placeholder.group(1);
+                    Object value = properties.get(name);
+                    // A property which isn't set is resolved to the placeholder's default, if any
+                    placeholderValues.put(name, value == null ? null : value.toString());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to read rewrite configuration", e);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        environmentKey = Arrays.asList(classpath, configPath, configHash, placeholderValues);
+        return environmentKey;
+    }
+
+    private Recipe activeRecipe(Environment env) {
+        List<String> activeRecipes = getActiveRecipes();
+        return EnvironmentCache.recipe(environmentKey(gradleProperties()), activeRecipes, () -> env.activateRecipes(activeRecipes));
     }
 
     public Stream<SourceFile> parse(ExecutionContext ctx) {
-        Stream<SourceFile> builder = Stream.of();
         Set<Path> alreadyParsed = new HashSet<>();
+        // Source discovery, and with it the bookkeeping in alreadyParsed, always happens on the build thread.
+        // Only the lazily evaluated parsing of each project's sources is eligible to be run in parallel.
+        List<Stream<SourceFile>> projectSourceFiles = new ArrayList<>();
         if (project == project.getRootProject()) {
             for (Project subProject : project.getSubprojects()) {
-                builder = Stream.concat(builder, parse(subProject, alreadyParsed, ctx));
+                projectSourceFiles.add(parse(subProject, alreadyParsed, ctx));
             }
         }
-        return Stream.concat(builder, parse(project, alreadyParsed, ctx)).map(this::logParseErrors);
+        projectSourceFiles.add(parse(project, alreadyParsed, ctx));
+
+        int parallelism = Math.min(extension.getParallelism(), projectSourceFiles.size());
+        if (parallelism > 1) {
+            return parseInParallel(projectSourceFiles, parallelism).map(this::logParseErrors);
+        }
+        Stream<SourceFile> builder = Stream.of();
+        for (Stream<SourceFile> sourceFiles : projectSourceFiles) {
+            builder = Stream.concat(builder, sourceFiles);
+        }
+        return builder.map(this::logParseErrors);
+    }
+
+    private Stream<SourceFile> parseInParallel(List<Stream<SourceFile>> projectSourceFiles, int parallelism) {
+        logger.lifecycle("Parsing {} projects using {} threads", projectSourceFiles.size(), parallelism);
+        // Sources come out in project order, so the output is the same as a sequential parse. Each project's parser
+        // only gets a little ahead of the consumer, so that the sources of every project are never all on the heap.
+        return WorkerPool.concatInOrder("rewrite-parse", parallelism, projectSourceFiles, PARSE_HANDOFF_CAPACITY);
     }
 
     public Stream<SourceFile> parse(Project subproject, Set<Path> alreadyParsed, ExecutionContext ctx) {
@@ -720,7 +981,8 @@ public class DefaultProjectParser implements GradleProjectParser {
             sourceFileStream = sourceFileStream.concat(nonProjectResources, nonProjectResources.size());
 
             progressBar.setMax(sourceFileStream.size());
-            return sourceFileStream.map(addProvenance(projectProvenance)).peek(it -> progressBar.step());
+            return metrics.timeParse(subproject,
+                    sourceFileStream.map(addProvenance(projectProvenance)).peek(it -> progressBar.step()));
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -741,7 +1003,6 @@ public class DefaultProjectParser implements GradleProjectParser {
             Stream<SourceFile> sourceSetSourceFiles = Stream.of();
             int sourceSetSize = 0;
 
-            JavaTypeCache javaTypeCache = new JavaTypeCache();
             JavaCompile javaCompileTask = (JavaCompile) subproject.getTasks()
                     .getByName(sourceSet.getCompileJavaTaskName());
             JavaVersion javaVersion = getJavaVersion(javaCompileTask);
@@ -755,28 +1016,22 @@ public class DefaultProjectParser implements GradleProjectParser {
                     .getFiles()
                     .stream()
                     .map(File::toPath)
-                    .flatMap(dirPath -> {
-                        try {
-                            return Files.walk(dirPath);
-                        } catch (IOException e) {
-                            throw new UncheckedIOException(e);
-                        }
-                    })
-                    .filter(Files::isRegularFile)
+                    .flatMap(dirPath -> fileIndex().filesUnder(dirPath).stream())
                     .map(Path::toAbsolutePath)
                     .map(Path::normalize)
                     .distinct()
                     .collect(Collectors.toList());
 
-            List<Path> javaPaths = unparsedSources.stream()
+            List<Path> javaPaths = parsePlan.sourcesToParse(J.CompilationUnit.class, unparsedSources.stream()
                     .filter(path -> !alreadyParsed.contains(path))
                     .filter(path -> path.toString().endsWith(".java"))
-                    .collect(toList());
+                    .collect(toList()), alreadyParsed);
 
             // The compilation classpath doesn't include the transitive dependencies
             // The runtime classpath doesn't include compile only dependencies, e.g.: lombok, servlet-api
             // So we use both together to get comprehensive type information
             Set<Path> dependencyPaths = new HashSet<>();
+            long classpathResolutionStart = System.nanoTime();
             try {
                 Stream.concat(
                                 sourceSet.getRuntimeClasspath().getFiles().stream(),
@@ -792,6 +1047,8 @@ public class DefaultProjectParser implements GradleProjectParser {
                         sourceSet.getName(),
                         e);
             }
+            timings.record(PhaseTimings.Phase.CLASSPATH_RESOLUTION, classpathResolutionStart);
+            JavaTypeCache javaTypeCache = typeCache(subproject.getPath() + ':' + sourceSet.getName(), dependencyPaths, unparsedSources);
 
             if (!javaPaths.isEmpty()) {
                 alreadyParsed.addAll(javaPaths);
@@ -815,10 +1072,10 @@ public class DefaultProjectParser implements GradleProjectParser {
 
             if (subproject.getPlugins().hasPlugin("org.jetbrains.kotlin.jvm")) {
                 String excludedProtosPath = subproject.getProjectDir().getPath() + "/protos/build/generated";
-                List<Path> kotlinPaths = unparsedSources.stream()
+                List<Path> kotlinPaths = parsePlan.sourcesToParse(K.CompilationUnit.class, unparsedSources.stream()
                         .filter(it -> it.toString().endsWith(".kt"))
                         .filter(it -> !it.toString().startsWith(excludedProtosPath))
-                        .collect(toList());
+                        .collect(toList()), alreadyParsed);
 
                 if (!kotlinPaths.isEmpty()) {
                     alreadyParsed.addAll(kotlinPaths);
@@ -841,9 +1098,9 @@ public class DefaultProjectParser implements GradleProjectParser {
                 }
             }
             if (subproject.getPlugins().hasPlugin(GroovyPlugin.class)) {
-                List<Path> groovyPaths = unparsedSources.stream()
+                List<Path> groovyPaths = parsePlan.sourcesToParse(G.CompilationUnit.class, unparsedSources.stream()
                         .filter(it -> it.toString().endsWith(".groovy"))
-                        .collect(toList());
+                        .collect(toList()), alreadyParsed);
 
                 if (!groovyPaths.isEmpty()) {
                     // Groovy sources are aware of java types that are intermixed in the same directory/sourceSet
@@ -855,11 +1112,13 @@ public class DefaultProjectParser implements GradleProjectParser {
 
                     alreadyParsed.addAll(groovyPaths);
 
-                    Stream<SourceFile> cus = Stream.of((Supplier<GroovyParser>) () -> GroovyParser.builder()
-                            .classpath(dependenciesWithBuildDirs)
-                            .typeCache(javaTypeCache)
-                            .logCompilationWarningsAndErrors(false)
-                            .build()).map(Supplier::get).flatMap(gp -> gp.parse(groovyPaths, baseDir, ctx)).map(cu -> {
+                    Stream<SourceFile> cus = parseCached("groovy", groovyPaths, true,
+                            () -> classpathFingerprint(dependenciesWithBuildDirs),
+                            paths -> Stream.of((Supplier<GroovyParser>) () -> GroovyParser.builder()
+                                    .classpath(dependenciesWithBuildDirs)
+                                    .typeCache(javaTypeCache)
+                                    .logCompilationWarningsAndErrors(false)
+                                    .build()).map(Supplier::get).flatMap(gp -> gp.parse(paths, baseDir, ctx))).map(cu -> {
                         if (isExcluded(exclusions, cu.getSourcePath()) || cu.getSourcePath().startsWith(buildDir)) {
                             return null;
                         }
@@ -878,10 +1137,10 @@ public class DefaultProjectParser implements GradleProjectParser {
             for (File resourcesDir : sourceSet.getResources().getSourceDirectories()) {
                 if (resourcesDir.exists() && !alreadyParsed.contains(resourcesDir.toPath())) {
                     OmniParser omniParser = omniParser(alreadyParsed, subproject);
-                    List<Path> accepted = omniParser.acceptedPaths(baseDir, resourcesDir.toPath());
+                    List<Path> accepted = acceptedPaths(omniParser, alreadyParsed, subproject, resourcesDir.toPath());
                     sourceSetSourceFiles = Stream.concat(
                             sourceSetSourceFiles,
-                            omniParser.parse(accepted, baseDir, new InMemoryExecutionContext())
+                            parseResources(omniParser, accepted, new InMemoryExecutionContext())
                                     .map(it -> it.withMarkers(it.getMarkers().add(javaVersion))));
                     alreadyParsed.addAll(accepted);
                     sourceSetSize += accepted.size();
@@ -909,6 +1168,7 @@ public class DefaultProjectParser implements GradleProjectParser {
             Set<Path> alreadyParsed,
             Collection<PathMatcher> exclusions,
             ExecutionContext ctx) {
+        OmniParser omniParser = omniParser(alreadyParsed, subproject);
         return getAndroidProjectParser().parseProjectSourceSets(
                 subproject,
                 progressBar,
@@ -917,7 +1177,10 @@ public class DefaultProjectParser implements GradleProjectParser {
                 alreadyParsed,
                 exclusions,
                 ctx,
-                omniParser(alreadyParsed, subproject));
+                fileIndex(),
+                omniParser,
+                parsePlan,
+                resourcesDir -> acceptedPaths(omniParser, alreadyParsed, subproject, resourcesDir));
     }
 
     private Stream<SourceFile> parseJavaFiles(
@@ -931,12 +1194,16 @@ public class DefaultProjectParser implements GradleProjectParser {
             JavaTypeCache javaTypeCache) {
         view(ctx).setCharset(javaSourceCharset);
 
-        return Stream.of((Supplier<JavaParser>) () -> JavaParser.fromJavaVersion()
-                        .classpath(dependencyPaths)
-                        .typeCache(javaTypeCache)
-                        .logCompilationWarningsAndErrors(extension.getLogCompilationWarningsAndErrors())
-                        .build())
-                .map(Supplier::get).flatMap(jp -> jp.parse(javaPaths, baseDir, ctx)).map(cu -> {
+        return parseCached("java", javaPaths, true,
+                () -> jvmFingerprint(dependencyPaths, javaVersion, javaSourceCharset),
+                paths -> ParserPool.parse(
+                        parserKey("java", dependencyPaths, javaVersion, javaSourceCharset, javaTypeCache),
+                        () -> JavaParser.fromJavaVersion()
+                                .classpath(dependencyPaths)
+                                .typeCache(javaTypeCache)
+                                .logCompilationWarningsAndErrors(extension.getLogCompilationWarningsAndErrors())
+                                .build(),
+                        jp -> jp.parse(paths, baseDir, ctx))).map(cu -> {
                     if (isExcluded(exclusions, cu.getSourcePath()) || cu.getSourcePath().startsWith(buildDir)) {
                         return null;
                     }
@@ -954,11 +1221,16 @@ public class DefaultProjectParser implements GradleProjectParser {
                                                 JavaTypeCache javaTypeCache) {
         view(ctx).setCharset(javaSourceCharset);
 
-        return Stream.of((Supplier<KotlinParser>) () -> KotlinParser.builder()
-                .classpath(dependencyPaths)
-                .typeCache(javaTypeCache)
-                .logCompilationWarningsAndErrors(extension.getLogCompilationWarningsAndErrors())
-                .build()).map(Supplier::get).flatMap(kp -> kp.parse(kotlinPaths, baseDir, ctx)).map(cu -> {
+        return parseCached("kotlin", kotlinPaths, true,
+                () -> jvmFingerprint(dependencyPaths, javaVersion, javaSourceCharset),
+                paths -> ParserPool.parse(
+                        parserKey("kotlin", dependencyPaths, javaVersion, javaSourceCharset, javaTypeCache),
+                        () -> KotlinParser.builder()
+                                .classpath(dependencyPaths)
+                                .typeCache(javaTypeCache)
+                                .logCompilationWarningsAndErrors(extension.getLogCompilationWarningsAndErrors())
+                                .build(),
+                        kp -> kp.parse(paths, baseDir, ctx))).map(cu -> {
             if (isExcluded(exclusions, cu.getSourcePath()) || cu.getSourcePath().startsWith(buildDir)) {
                 return null;
             }
@@ -966,7 +1238,60 @@ public class DefaultProjectParser implements GradleProjectParser {
         }).filter(Objects::nonNull).map(it -> it.withMarkers(it.getMarkers().add(javaVersion)));
     }
 
-    private GradleParser gradleParser() {
+    /**
+     * Parsers are only reused for the same type cache as well as the same configuration, so that they never
+     * attribute types with a cache which the {@link TypeCacheRegistry} has since released.
+     */
+    private JavaTypeCache typeCache(String sourceSet, Collection<Path> classpath, Collection<Path> sources) {
+        if (extension.isWarmDaemon()) {
+            WarmState.dropIfChanged(project.getGradle(), sourceSet, classpath, sources);
+        }
+        return TypeCacheRegistry.forSourceSet(sourceSet, classpath, extension.getTypeCacheMaxEntries());
+    }
+
+    private List<Object> parserKey(String language,
+                                   Collection<Path> classpath,
+                                   JavaVersion javaVersion,
+                                   Charset charset,
+                                   JavaTypeCache javaTypeCache) {
+        return Arrays.asList(
+                language,
+                new HashSet<>(classpath),
+                javaVersion.getSourceCompatibility(),
+                javaVersion.getTargetCompatibility(),
+                charset,
+                extension.getLogCompilationWarningsAndErrors(),
+                javaTypeCache);
+    }
+
+    /**
+     * Parse Groovy DSL scripts with a pooled {@link GradleParser}, which is only built again when the buildscript or
+     * settings classpath has changed since the last one was built.
+     */
+    private Stream<SourceFile> parseGradleScripts(Collection<Path> scripts, ExecutionContext ctx) {
+        GradleScriptClasspaths classpaths = gradleScriptClasspaths();
+        return ParserPool.parse(
+                Arrays.asList("gradle", classpaths.settingsClasspath, classpaths.buildscriptClasspath, classpaths.stamp),
+                () -> GradleParser.builder()
+                        .groovyParser(GroovyParser.builder()
+                                .typeCache(new JavaTypeCache())
+                                .logCompilationWarningsAndErrors(false))
+                        .buildscriptClasspath(classpaths.buildscriptClasspath)
+                        .settingsClasspath(classpaths.settingsClasspath)
+                        .build(),
+                gp -> gp.parse(scripts, baseDir, ctx));
+    }
+
+    private synchronized GradleScriptClasspaths gradleScriptClasspaths() {
+        if (gradleScriptClasspaths == null || !gradleScriptClasspaths.isCurrent()) {
+            long start = System.nanoTime();
+            gradleScriptClasspaths = resolveGradleScriptClasspaths();
+            timings.record(PhaseTimings.Phase.CLASSPATH_RESOLUTION, start);
+        }
+        return gradleScriptClasspaths;
+    }
+
+    private GradleScriptClasspaths resolveGradleScriptClasspaths() {
         List<Path> settingsClasspath;
         if (GradleVersion.current().compareTo(GradleVersion.version("4.4")) >= 0) {
             try {
@@ -991,14 +1316,7 @@ public class DefaultProjectParser implements GradleProjectParser {
                 .stream()
                 .map(File::toPath)
                 .collect(toList());
-
-        return GradleParser.builder()
-                .groovyParser(GroovyParser.builder()
-                        .typeCache(new JavaTypeCache())
-                        .logCompilationWarningsAndErrors(false))
-                .buildscriptClasspath(buildscriptClasspath)
-                .settingsClasspath(settingsClasspath)
-                .build();
+        return new GradleScriptClasspaths(settingsClasspath, buildscriptClasspath);
     }
 
     private SourceFileStream parseGradleFiles(
@@ -1010,15 +1328,15 @@ public class DefaultProjectParser implements GradleProjectParser {
         int gradleFileCount = 0;
 
         // build.gradle
-        GradleParser gradleParser = null;
         GradleProject gradleProject = GradleProjectBuilder.gradleProject(subproject);
         File buildGradleFile = subproject.getBuildscript().getSourceFile();
         if (buildGradleFile != null) {
             Path buildScriptPath = baseDir.relativize(buildGradleFile.toPath());
-            if (!isExcluded(exclusions, buildScriptPath) && buildGradleFile.exists()) {
+            if (!parsePlan.parses(buildScriptPath.toString().endsWith(".gradle") ? G.CompilationUnit.class : PlainText.class)) {
+                alreadyParsed.add(buildGradleFile.toPath());
+            } else if (!isExcluded(exclusions, buildScriptPath) && buildGradleFile.exists()) {
                 if (buildScriptPath.toString().endsWith(".gradle")) {
-                    gradleParser = gradleParser();
-                    sourceFiles = gradleParser.parse(singleton(buildGradleFile.toPath()), baseDir, ctx);
+                    sourceFiles = parseGradleScripts(singleton(buildGradleFile.toPath()), ctx);
                 } else {
                     sourceFiles = PlainTextParser.builder().build()
                             .parse(singleton(buildGradleFile.toPath()), baseDir, ctx);
@@ -1040,14 +1358,10 @@ public class DefaultProjectParser implements GradleProjectParser {
             GradleSettings finalGs = gs;
             if (settingsGradleFile.exists()) {
                 Path settingsPath = baseDir.relativize(settingsGradleFile.toPath());
-                if (!isExcluded(exclusions, settingsPath)) {
-                    if (gradleParser == null) {
-                        gradleParser = gradleParser();
-                    }
+                if (!isExcluded(exclusions, settingsPath) && parsePlan.parses(G.CompilationUnit.class)) {
                     sourceFiles = Stream.concat(
                             sourceFiles,
-                            gradleParser
-                                    .parse(singleton(settingsGradleFile.toPath()), baseDir, ctx)
+                            parseGradleScripts(singleton(settingsGradleFile.toPath()), ctx)
                                     .map(sourceFile -> {
                                         if (finalGs == null) {
                                             return sourceFile;
@@ -1059,7 +1373,7 @@ public class DefaultProjectParser implements GradleProjectParser {
                 alreadyParsed.add(settingsGradleFile.toPath());
             } else if (settingsGradleKtsFile.exists()) {
                 Path settingsPath = baseDir.relativize(settingsGradleKtsFile.toPath());
-                if (!isExcluded(exclusions, settingsPath)) {
+                if (!isExcluded(exclusions, settingsPath) && parsePlan.parses(PlainText.class)) {
                     sourceFiles = Stream.concat(
                             sourceFiles,
                             PlainTextParser.builder().build()
@@ -1080,7 +1394,8 @@ public class DefaultProjectParser implements GradleProjectParser {
         File gradlePropertiesFile = subproject.file("gradle.properties");
         if (gradlePropertiesFile.exists()) {
             Path gradlePropertiesPath = baseDir.relativize(gradlePropertiesFile.toPath());
-            if (!isExcluded(exclusions, gradlePropertiesPath)) {
+            if (!isExcluded(exclusions, gradlePropertiesPath) &&
+                parsePlan.parses(org.openrewrite.properties.tree.Properties.File.class)) {
                 final GradleProject finalGradleProject = gradleProject;
                 sourceFiles = Stream.concat(
                         sourceFiles,
@@ -1094,47 +1409,30 @@ public class DefaultProjectParser implements GradleProjectParser {
 
         // Freestanding scripts
         try {
-            List<Path> freeStandingScripts = new ArrayList<>();
-            Files.walkFileTree(subproject.getProjectDir().toPath(), new SimpleFileVisitor<Path>() {
-                @Override
-                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
-                    Path dirFromRoot = baseDir.relativize(dir);
-                    String name = dirFromRoot.toString();
-                    if (subproject.getLayout().getBuildDirectory().getAsFile().get().toPath().equals(dir) ||
-                        name.startsWith(".") // Skip .gradle, .idea, .moderne, etc.
-                        || name.equals("out") // IntelliJ standard output directory
-                        || subproject.getSubprojects().stream()
-                                .anyMatch(sp -> dir.equals(sp.getProjectDir().toPath())) ||
-                        subproject.getGradle().getIncludedBuilds().stream()
-                                .anyMatch(ib -> dir.equals(ib.getProjectDir().toPath())) ||
-                        isExcluded(exclusions, baseDir.relativize(dir))) {
-                        return FileVisitResult.SKIP_SUBTREE;
-                    }
-
-                    return FileVisitResult.CONTINUE;
-                }
-
-                @Override
-                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-                    if (file.toString().endsWith(".gradle") && !alreadyParsed.contains(file) && !isExcluded(exclusions, baseDir.relativize(file))) {
-                        freeStandingScripts.add(file);
-                    }
-                    return FileVisitResult.CONTINUE;
-                }
-            });
+            Path buildDir = subproject.getLayout().getBuildDirectory().getAsFile().get().toPath();
+            List<Path> freeStandingScripts = parsePlan.sourcesToParse(G.CompilationUnit.class, fileIndex().filesUnder(subproject.getProjectDir().toPath(), dir -> {
+                String name = baseDir.relativize(dir).toString();
+                return !(buildDir.equals(dir) ||
+                         name.startsWith(".") // Skip .gradle, .idea, .moderne, etc.
+                         || name.equals("out") // IntelliJ standard output directory
+                         || subproject.getSubprojects().stream()
+                                 .anyMatch(sp -> dir.equals(sp.getProjectDir().toPath())) ||
+                         subproject.getGradle().getIncludedBuilds().stream()
+                                 .anyMatch(ib -> dir.equals(ib.getProjectDir().toPath())) ||
+                         isExcluded(exclusions, baseDir.relativize(dir)));
+            }).stream()
+                    .filter(file -> file.toString().endsWith(".gradle") && !alreadyParsed.contains(file) && !isExcluded(exclusions, baseDir.relativize(file)))
+                    .collect(toList()), alreadyParsed);
             if (!freeStandingScripts.isEmpty()) {
-                if (gradleParser == null) {
-                    gradleParser = gradleParser();
-                }
                 sourceFiles = Stream.concat(
                         sourceFiles,
-                        gradleParser.parse(freeStandingScripts, baseDir, ctx)
+                        parseGradleScripts(freeStandingScripts, ctx)
                                 .map(sourceFile -> sourceFile.withMarkers(sourceFile.getMarkers().add(gradleProject)))
                 );
                 alreadyParsed.addAll(freeStandingScripts);
                 gradleFileCount += freeStandingScripts.size();
             }
-        } catch (IOException e) {
+        } catch (UncheckedIOException e) {
             logger.warn("Unable to walk file tree for project {}", subproject.getPath(), e);
         }
 
@@ -1161,6 +1459,7 @@ public class DefaultProjectParser implements GradleProjectParser {
                     .filter(it -> !isExcluded(exclusions, it))
                     .filter(omniParser::accept)
                     .collect(toList());
+            gradleWrapperFiles = plannedResources(gradleWrapperFiles);
             sourceFiles = omniParser.parse(gradleWrapperFiles, baseDir, ctx);
             fileCount = gradleWrapperFiles.size();
         }
@@ -1171,9 +1470,88 @@ public class DefaultProjectParser implements GradleProjectParser {
     protected SourceFileStream parseNonProjectResources(Project subproject, Set<Path> alreadyParsed, ExecutionContext ctx) {
         //Collect any additional yaml/properties/xml files that are NOT already in a source set.
         OmniParser omniParser = omniParser(alreadyParsed, subproject);
-        List<Path> accepted = omniParser.acceptedPaths(baseDir, subproject.getProjectDir().toPath());
+        List<Path> accepted = acceptedPaths(omniParser, alreadyParsed, subproject, subproject.getProjectDir().toPath());
         return SourceFileStream.build("", s -> {
-        }).concat(omniParser.parse(accepted, baseDir, ctx), accepted.size());
+        }).concat(parseResources(omniParser, accepted, ctx), accepted.size());
+    }
+
+    private Stream<SourceFile> parseResources(OmniParser omniParser, List<Path> accepted, ExecutionContext ctx) {
+        return parseCached("resources", accepted, false,
+                () -> String.join("|", extension.getPlainTextMasks()),
+                paths -> omniParser.parse(paths, baseDir, ctx));
+    }
+
+    /**
+     * Parse {@code paths} with {@code parser}, reading back the trees of unchanged sources from the LST cache instead
+     * when it is enabled. Nothing is hashed or read back until the returned stream is consumed.
+     */
+    private Stream<SourceFile> parseCached(String parserType,
+                                           List<Path> paths,
+                                           boolean typeAttributed,
+                                           Supplier<String> fingerprint,
+                                           Function<List<Path>, Stream<SourceFile>> parser) {
+        LstCache cache = lstCache;
+        if (cache == null) {
+            return parser.apply(paths);
+        }
+        return Stream.of(paths).flatMap(p -> cache.parse(parserType, p, typeAttributed, fingerprint.get(), parser));
+    }
+
+    /**
+     * Called once every source has been parsed. When none was skipped, the cached trees this run didn't use belong
+     * to sources which have since changed or gone, and are removed.
+     */
+    private void finishLstCache() {
+        if (lstCache == null) {
+            return;
+        }
+        lstCache.logStatistics();
+        if (parsePlan.isEverything()) {
+            lstCache.prune();
+        }
+    }
+
+    private String classpathFingerprint(Collection<Path> classpath) {
+        return lstCache == null ? "" : lstCache.classpathFingerprint(classpath);
+    }
+
+    private String jvmFingerprint(Collection<Path> classpath, JavaVersion javaVersion, Charset charset) {
+        return classpathFingerprint(classpath) + '|' + javaVersion.getSourceCompatibility() + '|' +
+               javaVersion.getTargetCompatibility() + '|' + charset.name();
+    }
+
+    /**
+     * The paths {@code omniParser.acceptedPaths(baseDir, searchDir)} would return for a parser built by
+     * {@link #omniParser(Set, Project)}, found in the {@link FileIndex} rather than by walking {@code searchDir},
+     * leaving out those the active recipes can't change.
+     */
+    private List<Path> acceptedPaths(OmniParser omniParser, Set<Path> alreadyParsed, Project project, Path searchDir) {
+        return plannedResources(fileIndex().acceptedPaths(
+                omniParser,
+                baseDir,
+                searchDir,
+                pathMatchers(baseDir, mergeExclusions(project, baseDir, extension)),
+                alreadyParsed,
+                extension.getSizeThresholdMb()));
+    }
+
+    private List<Path> plannedResources(List<Path> paths) {
+        if (parsePlan.isEverything()) {
+            return paths;
+        }
+        PlainTextParser plainTextParser = PlainTextParser.builder()
+                .plainTextMasks(baseDir, extension.getPlainTextMasks())
+                .build();
+        return paths.stream()
+                .filter(path -> parsePlan.parsesResource(path, plainTextParser))
+                .collect(toList());
+    }
+
+    private synchronized FileIndex fileIndex() {
+        if (fileIndex == null) {
+            fileIndex = new FileIndex(baseDir);
+        }
+        return fileIndex;
     }
 
     private OmniParser omniParser(Set<Path> alreadyParsed, Project project) {
@@ -1238,12 +1616,12 @@ public class DefaultProjectParser implements GradleProjectParser {
                 Object sourceSet = sourceSets.getClass().getMethod("getByName", String.class)
                         .invoke(sourceSets, sourceSetName);
                 SourceDirectorySet kotlinDirectorySet = (SourceDirectorySet) sourceSet.getClass().getMethod("getKotlin").invoke(sourceSet);
-                List<Path> kotlinPaths = kotlinDirectorySet.getFiles().stream()
+                List<Path> kotlinPaths = parsePlan.sourcesToParse(K.CompilationUnit.class, kotlinDirectorySet.getFiles().stream()
                         .filter(it -> it.isFile() && it.getName().endsWith(".kt"))
                         .map(File::toPath)
                         .map(Path::toAbsolutePath)
                         .map(Path::normalize)
-                        .collect(toList());
+                        .collect(toList()), alreadyParsed);
 
                 // classpath doesn't include the transitive dependencies of the implementation configuration
                 // These aren't needed for compilation, but we want them so recipes have access to comprehensive type information
@@ -1282,14 +1660,16 @@ public class DefaultProjectParser implements GradleProjectParser {
                         .collect(toList());
 
                 if (!kotlinPaths.isEmpty()) {
-                    JavaTypeCache javaTypeCache = new JavaTypeCache();
-                    KotlinParser kp = KotlinParser.builder()
-                            .classpath(dependencyPaths)
-                            .typeCache(javaTypeCache)
-                            .logCompilationWarningsAndErrors(extension.getLogCompilationWarningsAndErrors())
-                            .build();
-
-                    Stream<SourceFile> cus = kp.parse(kotlinPaths, baseDir, ctx);
+                    JavaTypeCache javaTypeCache = typeCache(subproject.getPath() + ':' + sourceSetName, dependencyPaths, kotlinPaths);
+                    Stream<SourceFile> cus = ParserPool.parse(
+                            Arrays.asList("kotlin-multiplatform", new HashSet<>(dependencyPaths),
+                                    extension.getLogCompilationWarningsAndErrors(), javaTypeCache),
+                            () -> KotlinParser.builder()
+                                    .classpath(dependencyPaths)
+                                    .typeCache(javaTypeCache)
+                                    .logCompilationWarningsAndErrors(extension.getLogCompilationWarningsAndErrors())
+                                    .build(),
+                            kp -> kp.parse(kotlinPaths, baseDir, ctx));
                     alreadyParsed.addAll(kotlinPaths);
                     cus = cus.map(cu -> {
                         if (isExcluded(exclusions, cu.getSourcePath()) ||
@@ -1353,8 +1733,9 @@ public class DefaultProjectParser implements GradleProjectParser {
     }
 
     protected ResultsContainer listResults(ExecutionContext ctx) {
+        long discoveryStart = System.nanoTime();
         Environment env = environment();
-        Recipe recipe = env.activateRecipes(getActiveRecipes());
+        Recipe recipe = activeRecipe(env);
         if (recipe.getName().equals("org.openrewrite.Recipe$Noop")) {
             logger.warn("No recipes were activated. Activate a recipe with rewrite.activeRecipe(\"com.fully.qualified.RecipeClassName\") in your build file, or on the command line with -DactiveRecipe=com.fully.qualified.RecipeClassName");
             return new ResultsContainer(baseDir, null);
@@ -1372,54 +1753,97 @@ public class DefaultProjectParser implements GradleProjectParser {
             }
         }
 
-        org.openrewrite.java.style.Autodetect.Detector javaDetector = org.openrewrite.java.style.Autodetect.detector();
-        org.openrewrite.kotlin.style.Autodetect.Detector kotlinDetector = org.openrewrite.kotlin.style.Autodetect.detector();
-        org.openrewrite.xml.style.Autodetect.Detector xmlDetector = org.openrewrite.xml.style.Autodetect.detector();
-        List<SourceFile> sourceFiles = parse(ctx)
-                .peek(s -> {
-                    if (s instanceof K.CompilationUnit) {
-                        kotlinDetector.sample(s);
-                    } else if (s instanceof J.CompilationUnit) {
-                        javaDetector.sample(s);
-                    }
-                })
-                .peek(xmlDetector::sample)
-                .collect(toList());
-        Map<Class<? extends SourceFile>, NamedStyles> stylesByType = new HashMap<>();
-        stylesByType.put(J.CompilationUnit.class, javaDetector.build());
-        stylesByType.put(K.CompilationUnit.class, kotlinDetector.build());
-        stylesByType.put(Xml.Document.class, xmlDetector.build());
-        sourceFiles = ListUtils.map(sourceFiles, applyAutodetected(stylesByType));
+        if (extension.isParseOnlyAffectedSources()) {
+            parsePlan = ParsePlan.of(recipe, ctx);
+            if (!parsePlan.isEverything()) {
+                logger.lifecycle("Only parsing {} sources, as the active recipes can't change any others", parsePlan);
+            }
+        }
+        timings.record(PhaseTimings.Phase.DISCOVERY, discoveryStart);
+
+        Path stylesDirectory = extension.isCacheDetectedStyles() ?
+                project.getLayout().getBuildDirectory().dir("rewrite/styles").get().getAsFile().toPath() :
+                null;
+        LstStore lstStore = null;
+        try (StyleDetection styleDetection = new StyleDetection(extension, baseDir, stylesDirectory)) {
+            if (extension.isStreamRecipeRun() && !extension.isExportDatatables() && StreamingRecipeRun.canStream(recipe)) {
+                logger.lifecycle("Running active recipes on sources as they are parsed: {}", String.join(", ", getActiveRecipes()));
+                long metricsStart = metrics.startRecipeRun();
+                List<Result> results;
+                // Closed however the run ends, so that no parse worker is left waiting to hand over a source
+                try (Stream<SourceFile> sources = parse(ctx)) {
+                    results = StreamingRecipeRun.run(recipe, sources, styleDetection, ctx, timings, metrics::recordRecipeRun);
+                } catch (RuntimeException e) {
+                    metrics.recipeRunFinished(metricsStart, "error");
+                    throw e;
+                }
+                metrics.recipeRunFinished(metricsStart, "success");
+                metrics.recordResults(results);
+                finishLstCache();
+                TypeCacheRegistry.logStatistics();
+                return new ResultsContainer(baseDir, results);
+            }
 
-        logger.lifecycle("All sources parsed, running active recipes: {}", String.join(", ", getActiveRecipes()));
-        RecipeRun recipeRun = recipe.run(new InMemoryLargeSourceSet(sourceFiles), ctx);
+            LargeSourceSet sourceSet;
+            try (Stream<SourceFile> sources = parse(ctx)) {
+                Stream<SourceFile> parsed = sources
+                        .peek(sourceFile -> timings.time(PhaseTimings.Phase.AUTODETECT, () -> styleDetection.sample(sourceFile)));
+                if (extension.isDiskBackedSourceSet()) {
+                    Path lstDirectory = project.getLayout().getBuildDirectory().dir("rewrite/lst").get().getAsFile().toPath();
+                    lstStore = new LstStore(lstDirectory, extension.getSourceSetMemoryBudgetMb() * 1024L * 1024L);
+                    List<LstStore.Entry> entries = parsed.map(lstStore::addInitial).collect(toList());
+                    long autodetectStart = System.nanoTime();
+                    lstStore.setInitialDecorator(styleDetection.styles());
+                    timings.record(PhaseTimings.Phase.AUTODETECT, autodetectStart);
+                    sourceSet = new DiskBackedLargeSourceSet(lstStore, entries);
+                } else {
+                    sourceSet = styleDetection.applyLazily(new InMemoryLargeSourceSet(parsed.collect(toList())));
+                }
+            }
 
-        if (extension.isExportDatatables()) {
-            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss-SSS"));
-            Path datatableDirectoryPath = project.getLayout().getBuildDirectory().dir("reports/rewrite/datatables/" + timestamp).get().getAsFile().toPath();
-            logger.info(String.format("Printing available datatables to: %s", datatableDirectoryPath));
-            recipeRun.exportDatatablesToCsv(datatableDirectoryPath, ctx);
-        }
+            finishLstCache();
+            TypeCacheRegistry.logStatistics();
+            logger.lifecycle("All sources parsed, running active recipes: {}", String.join(", ", getActiveRecipes()));
+            long metricsStart = metrics.startRecipeRun();
+            long recipeRunStart = System.nanoTime();
+            RecipeRun recipeRun;
+            try {
+                recipeRun = recipe.run(sourceSet, ctx);
+            } catch (RuntimeException e) {
+                metrics.recipeRunFinished(metricsStart, "error");
+                throw e;
+            }
+            metrics.recipeRunFinished(metricsStart, "success");
+            timings.record(PhaseTimings.Phase.RECIPE_RUN, recipeRunStart);
+            metrics.recordRecipeRun(recipeRun);
+            metrics.recordResults(recipeRun.getChangeset().getAllResults());
+
+            if (extension.isExportDatatables()) {
+                String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss-SSS"));
+                Path datatableDirectoryPath = project.getLayout().getBuildDirectory().dir("reports/rewrite/datatables/" + timestamp).get().getAsFile().toPath();
+                logger.info(String.format("Printing available datatables to: %s", datatableDirectoryPath));
+                recipeRun.exportDatatablesToCsv(datatableDirectoryPath, ctx);
+            }
 
-        return new ResultsContainer(baseDir, recipeRun);
+            return new ResultsContainer(baseDir, recipeRun);
+        } finally {
+            if (lstStore != null) {
+                lstStore.close();
+            }
+        }
     }
 
     @Override
     public void shutdownRewrite() {
         REPO_ROOT_TO_PROVENANCE.clear();
+        if (extension.isWarmDaemon()) {
+            // Kept for the next build in this daemon, see WarmState
+            TypeCacheRegistry.resetStatistics();
+        } else {
+            WarmState.clear();
+        }
         GradleProjectBuilder.clearCaches();
-    }
-
-    private UnaryOperator<SourceFile> applyAutodetected(
-            Map<Class<? extends SourceFile>, NamedStyles> stylesByType) {
-        return before -> {
-            for (Map.Entry<Class<? extends SourceFile>, NamedStyles> styleTypeEntry : stylesByType.entrySet()) {
-                if (styleTypeEntry.getKey().isAssignableFrom(before.getClass())) {
-                    before = before.withMarkers(before.getMarkers().add(styleTypeEntry.getValue()));
-                }
-            }
-            return before;
-        };
+        metrics.close();
     }
 
     private <T extends SourceFile> UnaryOperator<T> addProvenance(List<Marker> projectProvenance) {
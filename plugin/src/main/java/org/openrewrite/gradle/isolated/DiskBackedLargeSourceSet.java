@@ -0,0 +1,172 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.gradle.isolated;
+
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.*;
+import org.openrewrite.marker.RecipesThatMadeChanges;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.UnaryOperator;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+
+/**
+ * A {@link LargeSourceSet} whose source files live in an {@link LstStore} rather than on the heap, so that
+ * repositories with more sources than fit in memory can still be run through a recipe.
+ * Source files are only held in memory while a recipe is visiting them or while they fit in the store's budget.
+ */
+class DiskBackedLargeSourceSet implements LargeSourceSet {
+    private final LstStore store;
+
+    @Nullable
+    private final DiskBackedLargeSourceSet initialState;
+
+    private final Map<LstStore.Entry, List<Recipe>> deletions;
+    private final List<LstStore.Entry> entries;
+    private List<Recipe> currentRecipeStack = emptyList();
+
+    DiskBackedLargeSourceSet(LstStore store, List<LstStore.Entry> entries) {
+        this(store, null, new LinkedHashMap<>(), entries);
+    }
+
+    private DiskBackedLargeSourceSet(LstStore store, @Nullable DiskBackedLargeSourceSet initialState,
+                                     Map<LstStore.Entry, List<Recipe>> deletions, List<LstStore.Entry> entries) {
+        this.store = store;
+        this.initialState = initialState;
+        this.deletions = deletions;
+        this.entries = entries;
+    }
+
+    private DiskBackedLargeSourceSet getInitialState() {
+        return initialState == null ? this : initialState;
+    }
+
+    @Override
+    public void setRecipe(List<Recipe> recipeStack) {
+        this.currentRecipeStack = recipeStack;
+    }
+
+    @Override
+    public LargeSourceSet editAll(UnaryOperator<SourceFile> map) {
+        List<LstStore.Entry> mapped = null;
+        for (int i = 0; i < entries.size(); i++) {
+            LstStore.Entry entry = entries.get(i);
+            SourceFile before = store.get(entry);
+            SourceFile after = map.apply(before);
+            LstStore.Entry afterEntry = entry;
+            if (after == null) {
+                deletions.put(entry, currentRecipeStack);
+                afterEntry = null;
+            } else if (after != before) {
+                afterEntry = store.add(after);
+            }
+            if (afterEntry != entry && mapped == null) {
+                mapped = new ArrayList<>(entries.subList(0, i));
+            }
+            if (mapped != null && afterEntry != null) {
+                mapped.add(afterEntry);
+            }
+        }
+        return mapped == null ? this : new DiskBackedLargeSourceSet(store, getInitialState(), deletions, mapped);
+    }
+
+    @Override
+    public LargeSourceSet generate(@Nullable Collection<? extends SourceFile> t) {
+        if (t == null || t.isEmpty()) {
+            return this;
+        }
+        List<LstStore.Entry> generated = new ArrayList<>(entries.size() + t.size());
+        generated.addAll(entries);
+        for (SourceFile sourceFile : t) {
+            generated.add(store.add(sourceFile));
+        }
+        return new DiskBackedLargeSourceSet(store, getInitialState(), deletions, generated);
+    }
+
+    public @Nullable SourceFile getBefore(Path sourcePath) {
+        for (LstStore.Entry entry : getInitialState().entries) {
+            if (entry.getSourcePath().equals(sourcePath)) {
+                return store.get(entry);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Every result is read back from the store here, so the returned changeset no longer depends on the store
+     * and remains usable after it is closed.
+     */
+    @Override
+    public Changeset getChangeset() {
+        Map<UUID, LstStore.Entry> initialEntries = new HashMap<>();
+        for (LstStore.Entry entry : getInitialState().entries) {
+            initialEntries.put(entry.getId(), entry);
+        }
+
+        List<Result> changes = new ArrayList<>();
+        for (LstStore.Entry entry : entries) {
+            LstStore.Entry original = initialEntries.get(entry.getId());
+            if (original == entry) {
+                continue;
+            }
+            SourceFile after = store.get(entry);
+            if (original != null) {
+                changes.add(new Result(store.get(original), after));
+            } else {
+                Collection<List<Recipe>> recipes = after.getMarkers().findFirst(RecipesThatMadeChanges.class)
+                        .map(RecipesThatMadeChanges::getRecipes)
+                        .orElse(emptyList());
+                changes.add(new Result(null, after, recipes));
+            }
+        }
+
+        for (Map.Entry<LstStore.Entry, List<Recipe>> deletion : deletions.entrySet()) {
+            // A file which was generated and then deleted during the same run is not a change
+            LstStore.Entry original = initialEntries.get(deletion.getKey().getId());
+            if (original != null) {
+                changes.add(new Result(store.get(original), null, singletonList(deletion.getValue())));
+            }
+        }
+
+        return new MaterializedChangeset(changes);
+    }
+
+    private static class MaterializedChangeset implements Changeset {
+        private final List<Result> changes;
+
+        MaterializedChangeset(List<Result> changes) {
+            this.changes = changes;
+        }
+
+        @Override
+        public int size() {
+            return changes.size();
+        }
+
+        @Override
+        public List<Result> getPage(int start, int count) {
+            return changes.subList(start, Math.min(changes.size(), start + count));
+        }
+
+        @Override
+        public List<Result> getAllResults() {
+            return changes;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.gradle.isolated;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.openrewrite.Recipe;
+import org.openrewrite.config.Environment;
+
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the environment loaded from the recipe classpath and configuration file, and the recipes activated from it,
+ * so that every rewrite task of a build, in whichever project, scans the recipe classpath only once.
+ * <p>
+ * Nothing is kept beyond the build it was loaded in, unless {@link org.openrewrite.gradle.RewriteExtension#isWarmDaemon()}
+ * is enabled. Only the most recently used few environments and recipes are kept.
+ */
+final class EnvironmentCache {
+    private static final Logger logger = Logging.getLogger(EnvironmentCache.class);
+
+    private static final int MAX_ENVIRONMENTS = 4;
+    private static final int MAX_RECIPES = 16;
+
+    private static final Map<List<Object>, Environment> ENVIRONMENTS = new LinkedHashMap<List<Object>, Environment>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<Object>, Environment> eldest) {
+            return size() > MAX_ENVIRONMENTS;
+        }
+    };
+
+    private static final Map<List<Object>, Recipe> RECIPES = new LinkedHashMap<List<Object>, Recipe>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<Object>, Recipe> eldest) {
+            return size() > MAX_RECIPES;
+        }
+    };
+
+    private static WeakReference<Object> currentBuild = new WeakReference<>(null);
+
+    private EnvironmentCache() {
+    }
+
+    /**
+     * Drop whatever was kept by a previous build, unless it is to be kept across builds.
+     *
+     * @param build The {@link org.gradle.api.invocation.Gradle} instance of the build now running.
+     */
+    static synchronized void enterBuild(Object build, boolean keepAcrossBuilds) {
+        if (currentBuild.get() != build) {
+            currentBuild = new WeakReference<>(build);
+            if (!keepAcrossBuilds) {
+                clear();
+            }
+        }
+    }
+
+    /**
+     * @param key  Everything the environment is loaded from: the recipe classpath, the configuration file's location
+     *             and content, and the properties its placeholders are resolved with.
+     * @param load Loads the environment if none is kept for this key.
+     */
+    static synchronized Environment environment(List<Object> key, Supplier<Environment> load) {
+        Environment environment = ENVIRONMENTS.get(key);
+        if (environment == null) {
+            environment = load.get();
+            ENVIRONMENTS.put(key, environment);
+        } else {
+            logger.info("Reusing the recipes loaded earlier from the same classpath and configuration");
+        }
+        return environment;
+    }
+
+    /**
+     * @param environmentKey The key the environment the recipes are activated from was kept under.
+     */
+    static synchronized Recipe recipe(List<Object> environmentKey, List<String> activeRecipes, Supplier<Recipe> activate) {
+        List<Object> key = Arrays.asList(environmentKey, new ArrayList<>(activeRecipes));
+        Recipe recipe = RECIPES.get(key);
+        if (recipe == null) {
+            recipe = activate.get();
+            RECIPES.put(key, recipe);
+        }
+        return recipe;
+    }
+
+    static synchronized void clear() {
+        ENVIRONMENTS.clear();
+        RECIPES.clear();
+    }
+}
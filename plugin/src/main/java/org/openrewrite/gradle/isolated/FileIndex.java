@@ -0,0 +1,204 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.gradle.isolated;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.openrewrite.polyglot.OmniParser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Every file in the repository, found by walking it once, so that discovering the sources of each project and
+ * source set is a lookup rather than another walk of the file system.
+ * <p>
+ * Directories which never contain sources, such as {@code .git} and {@code node_modules}, are not indexed.
+ * Looking up a directory which isn't indexed, because of that or because it lies outside the repository,
+ * falls back to walking it directly.
+ */
+class FileIndex {
+    private static final Logger logger = Logging.getLogger(FileIndex.class);
+
+    private static final Set<String> UNINDEXED_DIRECTORIES = new HashSet<>(Arrays.asList(".git", ".gradle", "node_modules"));
+
+    /**
+     * The directory names which {@link OmniParser#acceptedPaths(Path, Path)} never descends into.
+     */
+    private static final Set<String> OMNI_PARSER_IGNORED_DIRECTORIES = new HashSet<>(Arrays.asList(
+            "build", "target", "out", ".sass-cache", ".git", ".gradle", ".idea", ".metadata", "node_modules", ".mvn"));
+
+    private final NavigableMap<String, Entry> files = new TreeMap<>();
+    private final Set<Path> directories = new HashSet<>();
+
+    FileIndex(Path root) {
+        long start = System.nanoTime();
+        walk(root, dir -> {
+            if (!dir.equals(root) && UNINDEXED_DIRECTORIES.contains(dir.getFileName().toString())) {
+                return false;
+            }
+            directories.add(dir);
+            return true;
+        }, entry -> files.put(entry.path.toString(), entry));
+        logger.info("Indexed {} files in {} directories under {} in {}ms",
+                files.size(), directories.size(), root, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * @return The regular files anywhere under {@code dir}, including those which are symbolic links to one.
+     */
+    List<Path> filesUnder(Path dir) {
+        return filesUnder(dir, d -> true);
+    }
+
+    /**
+     * @param descendInto Whether files in a directory, and in the directories below it, should be included.
+     *                    Tested for {@code dir} itself and every directory below it which contains files.
+     * @return The regular files under {@code dir} in directories accepted by {@code descendInto}.
+     */
+    List<Path> filesUnder(Path dir, Predicate<Path> descendInto) {
+        List<Path> found = new ArrayList<>();
+        for (Entry entry : entriesUnder(dir, descendInto)) {
+            found.add(entry.path);
+        }
+        return found;
+    }
+
+    /**
+     * Equivalent to {@link OmniParser#acceptedPaths(Path, Path)} for a parser built with these exclusions and size
+     * threshold, answered from the index.
+     */
+    List<Path> acceptedPaths(OmniParser omniParser,
+                             Path baseDir,
+                             Path searchDir,
+                             Collection<PathMatcher> exclusionMatchers,
+                             Set<Path> alreadyParsed,
+                             int sizeThresholdMb) {
+        List<Path> accepted = new ArrayList<>();
+        Predicate<Path> descendInto = dir -> {
+            for (Path segment : searchDir.relativize(dir)) {
+                if (OMNI_PARSER_IGNORED_DIRECTORIES.contains(segment.toString())) {
+                    return false;
+                }
+            }
+            return !alreadyParsed.contains(dir) && !isExcluded(exclusionMatchers, baseDir.relativize(dir));
+        };
+        for (Entry entry : entriesUnder(searchDir, descendInto)) {
+            if (entry.symbolicLink ||
+                alreadyParsed.contains(entry.path) ||
+                isExcluded(exclusionMatchers, baseDir.relativize(entry.path)) ||
+                sizeThresholdMb > 0 && entry.size > sizeThresholdMb * 1024L * 1024L) {
+                continue;
+            }
+            if (omniParser.accept(entry.path)) {
+                accepted.add(entry.path);
+            }
+        }
+        return accepted;
+    }
+
+    private List<Entry> entriesUnder(Path dir, Predicate<Path> descendInto) {
+        Collection<Entry> candidates;
+        if (directories.contains(dir)) {
+            String prefix = dir.toString() + File.separatorChar;
+            candidates = files.subMap(prefix, true, dir.toString() + (char) (File.separatorChar + 1), false).values();
+        } else if (Files.isDirectory(dir)) {
+            candidates = new ArrayList<>();
+            walk(dir, d -> true, candidates::add);
+        } else {
+            return Collections.emptyList();
+        }
+
+        Map<Path, Boolean> included = new HashMap<>();
+        List<Entry> found = new ArrayList<>();
+        for (Entry entry : candidates) {
+            if (isIncluded(entry.path.getParent(), dir, descendInto, included)) {
+                found.add(entry);
+            }
+        }
+        return found;
+    }
+
+    private static boolean isIncluded(Path directory, Path root, Predicate<Path> descendInto, Map<Path, Boolean> included) {
+        Boolean result = included.get(directory);
+        if (result == null) {
+            result = (directory.equals(root) || isIncluded(directory.getParent(), root, descendInto, included)) &&
+                     descendInto.test(directory);
+            included.put(directory, result);
+        }
+        return result;
+    }
+
+    private static boolean isExcluded(Collection<PathMatcher> exclusions, Path path) {
+        for (PathMatcher excluded : exclusions) {
+            if (excluded.matches(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Like {@link Files#walk(Path, FileVisitOption...)}, symbolic links to directories are not followed,
+     * but symbolic links to regular files are included.
+     */
+    private static void walk(Path root, Predicate<Path> enter, Consumer<Entry> visit) {
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    return enter.test(dir) ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile()) {
+                        visit.accept(new Entry(file, attrs.size(), false));
+                    } else if (attrs.isSymbolicLink() && Files.isRegularFile(file)) {
+                        visit.accept(new Entry(file, file.toFile().length(), true));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    logger.debug("Unable to index {}", file, exc);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to index " + root, e);
+        }
+    }
+
+    private static class Entry {
+        private final Path path;
+        private final long size;
+        private final boolean symbolicLink;
+
+        private Entry(Path path, long size, boolean symbolicLink) {
+            this.path = path;
+            this.size = size;
+            this.symbolicLink = symbolicLink;
+        }
+    }
+}
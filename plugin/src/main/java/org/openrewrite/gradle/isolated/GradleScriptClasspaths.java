@@ -0,0 +1,59 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.gradle.isolated;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * The resolved settings and buildscript classpaths, together with the size and modification time of every
+ * entry at the time they were resolved, so that a rebuilt plugin jar is noticed without resolving again.
+ */
+class GradleScriptClasspaths {
+    final List<Path> settingsClasspath;
+    final List<Path> buildscriptClasspath;
+    final String stamp;
+
+    GradleScriptClasspaths(List<Path> settingsClasspath, List<Path> buildscriptClasspath) {
+        this.settingsClasspath = settingsClasspath;
+        this.buildscriptClasspath = buildscriptClasspath;
+        this.stamp = stamp();
+    }
+
+    /**
+     * @return Whether every entry is still as it was when the classpaths were resolved.
+     */
+    boolean isCurrent() {
+        return stamp.equals(stamp());
+    }
+
+    private String stamp() {
+        StringBuilder stamp = new StringBuilder();
+        for (Path entry : settingsClasspath) {
+            stamp(entry, stamp);
+        }
+        for (Path entry : buildscriptClasspath) {
+            stamp(entry, stamp);
+        }
+        return stamp.toString();
+    }
+
+    private static void stamp(Path entry, StringBuilder stamp) {
+        File file = entry.toFile();
+        stamp.append(file.length()).append(':').append(file.lastModified()).append(';');
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.gradle.isolated;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.FileAttributes;
+import org.openrewrite.ParseExceptionResult;
+import org.openrewrite.SourceFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the LSTs produced by previous runs on local disk so that sources which haven't changed since are read back
+ * rather than parsed again.
+ * <p>
+ * A cached tree is keyed by the content of its source file, the parser which produced it and a fingerprint of
+ * everything else that parser was given: the classpath, the language level, the charset and so on.
+ * Type attribution of a Java, Kotlin or Groovy source also depends on the other sources it was compiled with, so for
+ * those languages the key additionally covers every source in the same batch. Changing any one source in a source set
+ * therefore causes the whole source set to be parsed again, while untouched source sets are read back entirely.
+ * The file attributes of a tree which is read back are those of its source file now, not when it was cached.
+ * <p>
+ * Every change to a source leaves the tree cached for its earlier content behind, so once every source has been parsed
+ * the trees which were neither read back nor written are removed with {@link #prune()}.
+ */
+class LstCache {
+    private static final Logger logger = Logging.getLogger(LstCache.class);
+
+    private final Path directory;
+    private final Path baseDir;
+    private final String version;
+    private final LstSerializer serializer = new LstSerializer();
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+    private final Map<Set<Path>, String> classpathFingerprints = new ConcurrentHashMap<>();
+    private final Set<String> used = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param version The rewrite version in use. Trees cached by another version are never read back.
+     */
+    LstCache(Path directory, Path baseDir, String version) {
+        this.directory = directory;
+        this.baseDir = baseDir;
+        this.version = version;
+    }
+
+    /**
+     * Read back the trees of any of {@code paths} which are cached, parsing the remainder with {@code parser}.
+     *
+     * @param parserType     Distinguishes trees of the same source produced by different parsers.
+     * @param typeAttributed Whether a tree depends on the other sources in the batch as well as its own.
+     *                       When set, either all paths are read back from the cache or all of them are parsed.
+     * @param fingerprint    The inputs, other than the sources themselves, which affect the trees that are produced.
+     */
+    Stream<SourceFile> parse(String parserType,
+                             List<Path> paths,
+                             boolean typeAttributed,
+                             String fingerprint,
+                             Function<List<Path>, Stream<SourceFile>> parser) {
+        if (paths.isEmpty()) {
+            return Stream.empty();
+        }
+
+        Map<Path, String> keys = new LinkedHashMap<>();
+        MessageDigest batch = sha256();
+        for (Path path : paths) {
+            String contentHash;
+            try {
+                contentHash = hash(path);
+            } catch (IOException e) {
+                // Let the parser report whatever is wrong with this file
+                logger.debug("Unable to hash {}, it will not be cached", path, e);
+                misses.addAndGet(paths.size());
+                return parser.apply(paths);
+            }
+            String relativePath = baseDir.relativize(path).toString();
+            keys.put(path, relativePath + '\0' + contentHash);
+            batch.update((relativePath + '\0' + contentHash + '\n').getBytes(StandardCharsets.UTF_8));
+        }
+        String prefix = version + '\0' + System.getProperty("java.version") + '\0' + parserType + '\0' + fingerprint + '\0' +
+                        (typeAttributed ? toHex(batch.digest()) : "") + '\0';
+        for (Map.Entry<Path, String> key : keys.entrySet()) {
+            key.setValue(toHex(sha256().digest((prefix + key.getValue()).getBytes(StandardCharsets.UTF_8))));
+        }
+
+        Map<String, SourceFile> cached = new LinkedHashMap<>();
+        List<Path> unparsed = new ArrayList<>();
+        for (Map.Entry<Path, String> key : keys.entrySet()) {
+            SourceFile sourceFile = read(key.getValue());
+            if (sourceFile == null) {
+                unparsed.add(key.getKey());
+            } else {
+                cached.put(key.getValue(), withCurrentFileAttributes(sourceFile, key.getKey()));
+            }
+        }
+
+        if (typeAttributed && !unparsed.isEmpty()) {
+            unparsed = paths;
+            cached.clear();
+        }
+        used.addAll(cached.keySet());
+        hits.addAndGet(cached.size());
+        misses.addAndGet(unparsed.size());
+        if (unparsed.isEmpty()) {
+            return cached.values().stream();
+        }
+
+        Map<Path, String> keysBySourcePath = new HashMap<>();
+        for (Map.Entry<Path, String> key : keys.entrySet()) {
+            keysBySourcePath.put(baseDir.relativize(key.getKey()), key.getValue());
+        }
+        return Stream.concat(
+                cached.values().stream(),
+                parser.apply(unparsed).peek(sourceFile -> {
+                    String key = keysBySourcePath.get(sourceFile.getSourcePath());
+                    if (key != null && !sourceFile.getMarkers().findFirst(ParseExceptionResult.class).isPresent()) {
+                        write(key, sourceFile);
+                    }
+                }));
+    }
+
+    /**
+     * Describe a classpath by the location, size and modification time of each entry, so that rebuilding a jar or
+     * a classes directory invalidates the trees which were attributed with it. Classpaths are described once per run.
+     */
+    String classpathFingerprint(Collection<Path> classpath) {
+        return classpathFingerprints.computeIfAbsent(new HashSet<>(classpath), LstCache::describeClasspath);
+    }
+
+    static String describeClasspath(Set<Path> classpath) {
+        List<String> entries = new ArrayList<>(classpath.size());
+        for (Path entry : classpath) {
+            StringBuilder description = new StringBuilder(entry.toString());
+            try {
+                if (Files.isDirectory(entry)) {
+                    try (Stream<Path> files = Files.walk(entry)) {
+                        files.filter(Files::isRegularFile).sorted().forEach(file -> describe(file, description));
+                    }
+                } else if (Files.exists(entry)) {
+                    describe(entry, description);
+                }
+            } catch (IOException | UncheckedIOException e) {
+                // An unreadable entry is described by its location alone
+                logger.debug("Unable to fingerprint classpath entry {}", entry, e);
+            }
+            entries.add(description.toString());
+        }
+        Collections.sort(entries);
+        return toHex(sha256().digest(String.join("\n", entries).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static void describe(Path file, StringBuilder description) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            description.append('|').append(file.getFileName())
+                    .append(':').append(attributes.size())
+                    .append(':').append(attributes.lastModifiedTime().toMillis());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The content of a source is all a cached tree is keyed by, so its file attributes, such as whether it is
+     * executable, are those of the file when the tree was cached. They are read afresh, so that writing the tree back
+     * out neither reverts nor misses a change to them.
+     */
+    private static SourceFile withCurrentFileAttributes(SourceFile sourceFile, Path path) {
+        if (sourceFile.getFileAttributes() == null) {
+            return sourceFile;
+        }
+        return sourceFile.withFileAttributes(FileAttributes.fromPath(path));
+    }
+
+    void logStatistics() {
+        int hitCount = hits.get();
+        int missCount = misses.get();
+        if (hitCount + missCount > 0) {
+            logger.lifecycle("Reused {} of {} sources from the LST cache", hitCount, hitCount + missCount);
+        }
+    }
+
+    /**
+     * Remove every cached tree which was neither read back nor written since this cache was created, along with
+     * anything left behind by an interrupted write. Only call this once every source has been parsed, as the trees
+     * of sources which weren't are still valid.
+     */
+    void prune() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        int pruned = 0;
+        try (Stream<Path> shards = Files.list(directory)) {
+            for (Path shard : (Iterable<Path>) shards::iterator) {
+                if (!Files.isDirectory(shard)) {
+                    continue;
+                }
+                try (Stream<Path> entries = Files.list(shard)) {
+                    for (Path entry : (Iterable<Path>) entries::iterator) {
+                        String name = entry.getFileName().toString();
+                        String key = name.endsWith(".json.gz") ? name.substring(0, name.length() - ".json.gz".length()) : null;
+                        if (key == null || !used.contains(key)) {
+                            Files.deleteIfExists(entry);
+                            pruned++;
+                        }
+                    }
+                }
+                try (Stream<Path> remaining = Files.list(shard)) {
+                    if (!remaining.findAny().isPresent()) {
+                        Files.deleteIfExists(shard);
+                    }
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            // Whatever is left is pruned by the next run
+            logger.debug("Unable to prune the LST cache {}", directory, e);
+        }
+        if (pruned > 0) {
+            logger.info("Removed {} LSTs from the cache which were not used by this run", pruned);
+        }
+    }
+
+    private @Nullable SourceFile read(String key) {
+        Path file = file(key);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            return serializer.read(file);
+        } catch (IOException | RuntimeException e) {
+            // A corrupt or incompatible entry is treated as a miss and overwritten once the source is parsed again
+            logger.debug("Unable to read cached LST {}", file, e);
+            return null;
+        }
+    }
+
+    private void write(String key, SourceFile sourceFile) {
+        Path file = file(key);
+        Path temp = file.resolveSibling(file.getFileName() + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            serializer.write(sourceFile, temp);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            used.add(key);
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Unable to cache the LST of {}", sourceFile.getSourcePath(), e);
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private Path file(String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key + ".json.gz");
+    }
+
+    private static String hash(Path path) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[8192];
+        try (InputStream in = Files.newInputStream(path)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.gradle.isolated;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openrewrite.SourceFile;
+import org.openrewrite.internal.ObjectMappers;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes LSTs to and reads them back from compressed files on local disk.
+ * Each source file is written independently, so type information is not shared between files once they are read back.
+ */
+class LstSerializer {
+    private final ObjectWriter writer;
+    private final ObjectReader reader;
+
+    LstSerializer() {
+        ObjectMapper mapper = ObjectMappers.propertyBasedMapper(LstSerializer.class.getClassLoader());
+        this.writer = mapper.writerFor(SourceFile.class);
+        this.reader = mapper.readerFor(SourceFile.class);
+    }
+
+    /**
+     * @return the uncompressed size of the serialized source file, in bytes.
+     */
+    long write(SourceFile sourceFile, Path target) throws IOException {
+        byte[] bytes = writer.writeValueAsBytes(sourceFile);
+        Files.createDirectories(target.getParent());
+        try (OutputStream out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(target)))) {
+            out.write(bytes);
+        }
+        return bytes.length;
+    }
+
+    SourceFile read(Path source) throws IOException {
+        try (InputStream in = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(source)))) {
+            return reader.readValue(in);
+        }
+    }
+}
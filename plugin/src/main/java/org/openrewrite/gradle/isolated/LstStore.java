@@ -0,0 +1,180 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.gradle.isolated;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.SourceFile;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * Holds the source files of a recipe run on local disk, keeping only the most recently used ones on the heap.
+ * The serialized size of a source file is used as an approximation of its footprint when deciding what stays resident.
+ */
+class LstStore implements AutoCloseable {
+    private static final Logger logger = Logging.getLogger(LstStore.class);
+
+    private final Path directory;
+    private final long memoryBudgetBytes;
+    private final LstSerializer serializer = new LstSerializer();
+    private final Map<Entry, SourceFile> resident = new LinkedHashMap<>(16, 0.75f, true);
+    private long residentBytes;
+    private long nextEntry;
+    private int pinned;
+    private UnaryOperator<SourceFile> initialDecorator = UnaryOperator.identity();
+
+    LstStore(Path directory, long memoryBudgetBytes) {
+        this.directory = directory;
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        deleteDirectory();
+    }
+
+    /**
+     * Adds a source file as it was produced by the parser.
+     * The decorator set with {@link #setInitialDecorator(UnaryOperator)} is applied whenever it is read back.
+     */
+    synchronized Entry addInitial(SourceFile sourceFile) {
+        return add(sourceFile, true);
+    }
+
+    /**
+     * Adds a source file as it was produced by a recipe.
+     */
+    synchronized Entry add(SourceFile sourceFile) {
+        return add(sourceFile, false);
+    }
+
+    private Entry add(SourceFile sourceFile, boolean initial) {
+        Path file = directory.resolve(Long.toString(nextEntry++, 36) + ".json.gz");
+        try {
+            long size = serializer.write(sourceFile, file);
+            Entry entry = new Entry(sourceFile.getId(), sourceFile.getSourcePath(), initial, file, null, size);
+            makeResident(entry, sourceFile);
+            return entry;
+        } catch (IOException | RuntimeException e) {
+            // Trees which can't be written are kept on the heap for the rest of the run rather than failing it
+            if (pinned++ == 0) {
+                logger.warn("Unable to move {} out of memory, it will be kept on the heap", sourceFile.getSourcePath());
+            }
+            logger.debug("Unable to move {} out of memory", sourceFile.getSourcePath(), e);
+            return new Entry(sourceFile.getId(), sourceFile.getSourcePath(), initial, null, sourceFile, 0);
+        }
+    }
+
+    void setInitialDecorator(UnaryOperator<SourceFile> initialDecorator) {
+        this.initialDecorator = initialDecorator;
+    }
+
+    synchronized SourceFile get(Entry entry) {
+        SourceFile sourceFile = entry.pinned;
+        if (sourceFile == null) {
+            sourceFile = resident.get(entry);
+        }
+        if (sourceFile == null) {
+            assert entry.file != null;
+            try {
+                sourceFile = serializer.read(entry.file);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to read " + entry.sourcePath + " back from " + entry.file, e);
+            }
+            makeResident(entry, sourceFile);
+        }
+        return entry.initial ? initialDecorator.apply(sourceFile) : sourceFile;
+    }
+
+    private void makeResident(Entry entry, SourceFile sourceFile) {
+        if (entry.size > memoryBudgetBytes) {
+            return;
+        }
+        resident.put(entry, sourceFile);
+        residentBytes += entry.size;
+        Iterator<Entry> eldest = resident.keySet().iterator();
+        while (residentBytes > memoryBudgetBytes && eldest.hasNext()) {
+            residentBytes -= eldest.next().size;
+            eldest.remove();
+        }
+    }
+
+    private void deleteDirectory() {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> {
+                try {
+                    Files.delete(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to clean up " + directory, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        resident.clear();
+        residentBytes = 0;
+        deleteDirectory();
+    }
+
+    /**
+     * A handle to a source file in the store. Handles are immutable; a source file changed by a recipe gets a new one.
+     */
+    static final class Entry {
+        private final UUID id;
+        private final Path sourcePath;
+        private final boolean initial;
+
+        @Nullable
+        private final Path file;
+
+        @Nullable
+        private final SourceFile pinned;
+
+        private final long size;
+
+        private Entry(UUID id, Path sourcePath, boolean initial, @Nullable Path file, @Nullable SourceFile pinned, long size) {
+            this.id = id;
+            this.sourcePath = sourcePath;
+            this.initial = initial;
+            this.file = file;
+            this.pinned = pinned;
+            this.size = size;
+        }
+
+        UUID getId() {
+            return id;
+        }
+
+        Path getSourcePath() {
+            return sourcePath;
+        }
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.gradle.isolated;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.*;
+import org.openrewrite.config.DeclarativeRecipe;
+import org.openrewrite.groovy.GroovyVisitor;
+import org.openrewrite.groovy.tree.G;
+import org.openrewrite.hcl.HclParser;
+import org.openrewrite.hcl.HclVisitor;
+import org.openrewrite.hcl.tree.Hcl;
+import org.openrewrite.java.JavaVisitor;
+import org.openrewrite.java.tree.J;
+import org.openrewrite.json.JsonParser;
+import org.openrewrite.json.JsonVisitor;
+import org.openrewrite.json.tree.Json;
+import org.openrewrite.kotlin.KotlinVisitor;
+import org.openrewrite.kotlin.tree.K;
+import org.openrewrite.polyglot.OmniParser;
+import org.openrewrite.properties.PropertiesParser;
+import org.openrewrite.properties.PropertiesVisitor;
+import org.openrewrite.properties.tree.Properties;
+import org.openrewrite.protobuf.ProtoParser;
+import org.openrewrite.protobuf.ProtoVisitor;
+import org.openrewrite.protobuf.tree.Proto;
+import org.openrewrite.quark.Quark;
+import org.openrewrite.text.PlainText;
+import org.openrewrite.text.PlainTextVisitor;
+import org.openrewrite.xml.XmlParser;
+import org.openrewrite.xml.XmlVisitor;
+import org.openrewrite.xml.tree.Xml;
+import org.openrewrite.yaml.YamlParser;
+import org.openrewrite.yaml.YamlVisitor;
+import org.openrewrite.yaml.tree.Yaml;
+
+import java.lang.reflect.Field;
+import java.nio.file.Path;
+import java.util.*;
+
+import static java.util.Collections.emptyList;
+
+/**
+ * Which types of source file the active recipes can change at all, so that sources of any other type can be left
+ * unparsed. A recipe can only change the sources its visitors accept, and the visitors of each language only accept
+ * that language's sources, so the types are worked out from the visitors of every recipe in the recipe graph,
+ * including the scanners of scanning recipes and the checks guarding a visitor with a precondition.
+ * <p>
+ * Any visitor which isn't known to accept only one language's sources, such as a plain {@link TreeVisitor} matching
+ * sources by path, means that every source is parsed, as before.
+ */
+class ParsePlan {
+    private static final Logger logger = Logging.getLogger(ParsePlan.class);
+
+    private static final ParsePlan EVERYTHING = new ParsePlan(null);
+
+    /**
+     * The base visitor of each language, most specific first, with the types of source file each accepts.
+     */
+    private static final Map<Class<?>, Set<Class<? extends SourceFile>>> VISITOR_TYPES = new LinkedHashMap<>();
+
+    /**
+     * Visitors of rewrite's own which only narrow down the sources their language's visitor accepts, such as to build
+     * files of a particular build tool.
+     */
+    private static final Set<String> NARROWING_VISITORS = new HashSet<>(Arrays.asList(
+            "org.openrewrite.maven.MavenVisitor",
+            "org.openrewrite.gradle.GradleVisitor"));
+
+    /**
+     * The type of source file each of {@link OmniParser#defaultResourceParsers()} produces, by parser.
+     */
+    private static final Map<Class<?>, Class<? extends SourceFile>> RESOURCE_TYPES = new HashMap<>();
+
+    static {
+        VISITOR_TYPES.put(KotlinVisitor.class, singletonType(K.CompilationUnit.class));
+        VISITOR_TYPES.put(GroovyVisitor.class, singletonType(G.CompilationUnit.class));
+        VISITOR_TYPES.put(JavaVisitor.class, new HashSet<>(Arrays.asList(J.CompilationUnit.class, K.CompilationUnit.class, G.CompilationUnit.class)));
+        VISITOR_TYPES.put(YamlVisitor.class, singletonType(Yaml.Documents.class));
+        VISITOR_TYPES.put(XmlVisitor.class, singletonType(Xml.Document.class));
+        VISITOR_TYPES.put(PropertiesVisitor.class, singletonType(Properties.File.class));
+        VISITOR_TYPES.put(JsonVisitor.class, singletonType(Json.Document.class));
+        VISITOR_TYPES.put(HclVisitor.class, singletonType(Hcl.ConfigFile.class));
+        VISITOR_TYPES.put(ProtoVisitor.class, singletonType(Proto.Document.class));
+        VISITOR_TYPES.put(PlainTextVisitor.class, singletonType(PlainText.class));
+
+        RESOURCE_TYPES.put(YamlParser.class, Yaml.Documents.class);
+        RESOURCE_TYPES.put(XmlParser.class, Xml.Document.class);
+        RESOURCE_TYPES.put(PropertiesParser.class, Properties.File.class);
+        RESOURCE_TYPES.put(JsonParser.class, Json.Document.class);
+        RESOURCE_TYPES.put(HclParser.class, Hcl.ConfigFile.class);
+        RESOURCE_TYPES.put(ProtoParser.class, Proto.Document.class);
+    }
+
+    /**
+     * The types of source file to parse, or {@code null} to parse every source.
+     */
+    @Nullable
+    private final Set<Class<? extends SourceFile>> types;
+
+    private final List<Parser> resourceParsers;
+
+    private ParsePlan(@Nullable Set<Class<? extends SourceFile>> types) {
+        this.types = types;
+        this.resourceParsers = types == null ? emptyList() : OmniParser.defaultResourceParsers();
+    }
+
+    static ParsePlan everything() {
+        return EVERYTHING;
+    }
+
+    static ParsePlan of(Recipe recipe, ExecutionContext ctx) {
+        Set<Class<? extends SourceFile>> types = new HashSet<>();
+        return collect(recipe, ctx, types, Collections.newSetFromMap(new IdentityHashMap<>())) ?
+                new ParsePlan(types) : EVERYTHING;
+    }
+
+    boolean isEverything() {
+        return types == null;
+    }
+
+    boolean parses(Class<? extends SourceFile> type) {
+        return types == null || types.contains(type);
+    }
+
+    /**
+     * @return {@code paths}, or none of them when the active recipes can't change sources of this type. Skipped sources
+     * are still marked as already parsed, so that they aren't parsed as plain text or quarks instead.
+     */
+    List<Path> sourcesToParse(Class<? extends SourceFile> type, List<Path> paths, Set<Path> alreadyParsed) {
+        if (paths.isEmpty() || parses(type)) {
+            return paths;
+        }
+        alreadyParsed.addAll(paths);
+        logger.info("Skipping {} {} sources which the active recipes can't change", paths.size(), describe(type));
+        return emptyList();
+    }
+
+    /**
+     * @param plainTextParser The parser which the {@link OmniParser} falls back to, including any plain text masks.
+     * @return Whether the {@link OmniParser} would parse this resource into a type of source file the active recipes
+     * can change.
+     */
+    boolean parsesResource(Path path, Parser plainTextParser) {
+        if (types == null) {
+            return true;
+        }
+        if (plainTextParser.accept(path) && types.contains(PlainText.class)) {
+            return true;
+        }
+        for (Parser parser : resourceParsers) {
+            if (parser.accept(path)) {
+                Class<? extends SourceFile> type = RESOURCE_TYPES.get(parser.getClass());
+                return type == null || types.contains(type);
+            }
+        }
+        return types.contains(PlainText.class) || types.contains(Quark.class);
+    }
+
+    @Override
+    public String toString() {
+        if (types == null) {
+            return "every source";
+        }
+        List<String> names = new ArrayList<>(types.size());
+        for (Class<? extends SourceFile> type : types) {
+            names.add(describe(type));
+        }
+        Collections.sort(names);
+        return names.toString();
+    }
+
+    /**
+     * @return {@code false} if the recipe may change sources of any type.
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static boolean collect(Recipe recipe, ExecutionContext ctx, Set<Class<? extends SourceFile>> types, Set<Recipe> visited) {
+        if (!visited.add(recipe)) {
+            return true;
+        }
+        try {
+            Recipe delegate = delegate(recipe);
+            if (delegate != null) {
+                // Preconditions decorating a recipe only ever narrow down what it changes
+                return collect(delegate, ctx, types, visited);
+            }
+            List<TreeVisitor<?, ExecutionContext>> visitors = new ArrayList<>(2);
+            if (recipe instanceof DeclarativeRecipe) {
+                // Its own visitors only evaluate its preconditions, the recipes in its recipe list make the changes
+                visitors.add(TreeVisitor.noop());
+            } else if (recipe instanceof ScanningRecipe) {
+                ScanningRecipe scanningRecipe = (ScanningRecipe) recipe;
+                Object acc = scanningRecipe.getInitialValue(ctx);
+                visitors.add(scanningRecipe.getScanner(acc));
+                visitors.add(scanningRecipe.getVisitor(acc));
+            } else {
+                visitors.add(recipe.getVisitor());
+            }
+            for (TreeVisitor<?, ExecutionContext> visitor : visitors) {
+                Set<Class<? extends SourceFile>> accepted = acceptedTypes(visitor);
+                if (accepted == null) {
+                    logger.debug("Parsing every source, as recipe {} may change sources of any type", recipe.getName());
+                    return false;
+                }
+                types.addAll(accepted);
+            }
+            for (Recipe child : recipe.getRecipeList()) {
+                if (!collect(child, ctx, types, visited)) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (Exception e) {
+            logger.debug("Parsing every source, as the visitors of recipe {} couldn't be inspected", recipe.getName(), e);
+            return false;
+        }
+    }
+
+    /**
+     * @return The recipe which a recipe decorated with preconditions delegates to, if it is one.
+     */
+    private static @Nullable Recipe delegate(Recipe recipe) throws ReflectiveOperationException {
+        for (Class<?> c = recipe.getClass(); c != null; c = c.getSuperclass()) {
+            for (Class<?> implemented : c.getInterfaces()) {
+                if ("org.openrewrite.DelegatingRecipe".equals(implemented.getName())) {
+                    return (Recipe) implemented.getMethod("getDelegate").invoke(recipe);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The types of source file the visitor accepts, or {@code null} if it may accept any.
+     */
+    private static @Nullable Set<Class<? extends SourceFile>> acceptedTypes(@Nullable TreeVisitor<?, ?> visitor) throws IllegalAccessException {
+        if (visitor == null || visitor.getClass() == TreeVisitor.noop().getClass()) {
+            return Collections.emptySet();
+        }
+        if (visitor instanceof Preconditions.Check) {
+            // Only visits what both its check and the visitor it guards accept
+            Set<Class<? extends SourceFile>> accepted = null;
+            for (Field field : Preconditions.Check.class.getDeclaredFields()) {
+                if (TreeVisitor.class.isAssignableFrom(field.getType())) {
+                    field.setAccessible(true);
+                    Set<Class<? extends SourceFile>> fieldTypes = acceptedTypes((TreeVisitor<?, ?>) field.get(visitor));
+                    if (fieldTypes != null) {
+                        if (accepted == null) {
+                            accepted = new HashSet<>(fieldTypes);
+                        } else {
+                            accepted.retainAll(fieldTypes);
+                        }
+                    }
+                }
+            }
+            return accepted;
+        }
+        for (Class<?> c = visitor.getClass(); c != null && c != TreeVisitor.class; c = c.getSuperclass()) {
+            Set<Class<? extends SourceFile>> languageTypes = VISITOR_TYPES.get(c);
+            if (languageTypes != null) {
+                return languageTypes;
+            }
+            if (!NARROWING_VISITORS.contains(c.getName()) && declaresIsAcceptable(c)) {
+                // Accepts sources on its own terms, rather than those of its language
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static boolean declaresIsAcceptable(Class<?> visitorClass) {
+        try {
+            visitorClass.getDeclaredMethod("isAcceptable", SourceFile.class, Object.class);
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static String describe(Class<? extends SourceFile> type) {
+        String name = type.getName();
+        return name.substring(name.lastIndexOf('.') + 1).replace('$', '.');
+    }
+
+    private static Set<Class<? extends SourceFile>> singletonType(Class<? extends SourceFile> type) {
+        return Collections.singleton(type);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.gradle.isolated;
+
+import org.openrewrite.Parser;
+import org.openrewrite.SourceFile;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Keeps parsers around once they are done with a batch of sources, so that the next batch parsed with the same
+ * configuration doesn't pay for bootstrapping a compiler and indexing its classpath again.
+ * <p>
+ * A parser is leased for as long as the stream of source files it produced is being consumed. It is reset and
+ * returned to the pool once that stream is exhausted or closed, so concurrent batches with the same configuration
+ * each get their own parser. A stream which is abandoned part way simply keeps its parser out of the pool.
+ * <p>
+ * Only the idle parsers of the most recently used configurations are kept, and those of a configuration whose type
+ * cache the {@link TypeCacheRegistry} drops are dropped along with it.
+ */
+final class ParserPool {
+    private static final int MAX_IDLE_CONFIGURATIONS = 32;
+
+    private static final Map<List<Object>, Deque<Parser>> IDLE = new LinkedHashMap<List<Object>, Deque<Parser>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<Object>, Deque<Parser>> eldest) {
+            return size() > MAX_IDLE_CONFIGURATIONS;
+        }
+    };
+
+    private ParserPool() {
+    }
+
+    /**
+     * @param key     Everything which was used to build the parser: the language, classpath, java version,
+     *                charset and any other builder setting. Parsers are only reused for an equal key.
+     * @param factory Builds a new parser if none with this key is idle.
+     * @param parse   Parses a batch of sources with the leased parser.
+     */
+    static <P extends Parser> Stream<SourceFile> parse(List<Object> key,
+                                                       Supplier<P> factory,
+                                                       Function<P, Stream<SourceFile>> parse) {
+        return Stream.of(key).flatMap(k -> {
+            P parser = lease(k, factory);
+            return releasing(parse.apply(parser), () -> release(k, parser));
+        });
+    }
+
+    static synchronized void clear() {
+        IDLE.clear();
+    }
+
+    /**
+     * Drop the idle parsers of every configuration matching {@code key}.
+     * Parsers which are leased at the time are still returned to the pool.
+     */
+    static synchronized void evict(Predicate<List<Object>> key) {
+        IDLE.keySet().removeIf(key);
+    }
+
+    private static synchronized <P extends Parser> P lease(List<Object> key, Supplier<P> factory) {
+        Deque<Parser> idle = IDLE.get(key);
+        if (idle != null && !idle.isEmpty()) {
+            //noinspection unchecked
+            return (P) idle.pop();
+        }
+        return factory.get();
+    }
+
+    private static void release(List<Object> key, Parser parser) {
+        parser.reset();
+        synchronized (ParserPool.class) {
+            IDLE.computeIfAbsent(key, k -> new ArrayDeque<>()).push(parser);
+        }
+    }
+
+    private static Stream<SourceFile> releasing(Stream<SourceFile> parsed, Runnable release) {
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable releaseOnce = () -> {
+            if (released.compareAndSet(false, true)) {
+                release.run();
+            }
+        };
+        Spliterator<SourceFile> spliterator = parsed.spliterator();
+        return StreamSupport.stream(new Spliterators.AbstractSpliterator<SourceFile>(
+                        spliterator.estimateSize(), spliterator.characteristics() & ~(Spliterator.SIZED | Spliterator.SUBSIZED)) {
+                    @Override
+                    public boolean tryAdvance(Consumer<? super SourceFile> action) {
+                        if (spliterator.tryAdvance(action)) {
+                            return true;
+                        }
+                        releaseOnce.run();
+                        return false;
+                    }
+                }, false)
+                .onClose(() -> {
+                    parsed.close();
+                    releaseOnce.run();
+                });
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.gradle.isolated;
+
+import org.openrewrite.Result;
+import org.openrewrite.SourceFile;
+import org.openrewrite.binary.Binary;
+import org.openrewrite.quark.Quark;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes the diff of each result to the dry run report as soon as it is computed, so that no more than one diff is
+ * held in memory at a time and none is computed twice.
+ */
+class PatchWriter implements Closeable {
+    private final BufferedWriter writer;
+    private final PhaseTimings timings;
+
+    PatchWriter(Path reportPath, PhaseTimings timings) throws IOException {
+        this.timings = timings;
+        Files.createDirectories(reportPath.getParent());
+        this.writer = Files.newBufferedWriter(reportPath);
+    }
+
+    /**
+     * Whether a diff of this result can be displayed at all. Console output notes that other results were
+     * touched by a recipe.
+     */
+    private static boolean isDiffable(Result result) {
+        SourceFile after = result.getAfter();
+        return !(after instanceof Binary) && !(after instanceof Quark);
+    }
+
+    /**
+     * Write the diff of a result, if it can be displayed.
+     */
+    void write(Result result) throws IOException {
+        if (isDiffable(result)) {
+            write(diff(result));
+        }
+    }
+
+    private String diff(Result result) {
+        long start = System.nanoTime();
+        try {
+            return result.diff();
+        } finally {
+            timings.record(PhaseTimings.Phase.DIFF, start);
+        }
+    }
+
+    private void write(String diff) throws IOException {
+        long start = System.nanoTime();
+        writer.write(diff + "\n");
+        timings.record(PhaseTimings.Phase.PATCH_WRITE, start);
+    }
+
+    @Override
+    public void close() throws IOException {
+        long start = System.nanoTime();
+        writer.close();
+        timings.record(PhaseTimings.Phase.PATCH_WRITE, start);
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.gradle.isolated;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.openrewrite.internal.ObjectMappers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The phase timings, parse throughput and peak heap of a run of the active recipes, compared with those of an earlier
+ * run kept as the baseline, so that a recipe or plugin upgrade which slows the run down is noticed.
+ */
+class PerfReport {
+    private static final Logger logger = Logging.getLogger(PerfReport.class);
+
+    private static final ObjectMapper MAPPER = ObjectMappers.propertyBasedMapper(PerfReport.class.getClassLoader());
+
+    /**
+     * Phases which took less than this in the baseline vary too much from run to run to be compared.
+     */
+    private static final long MIN_COMPARED_MS = 100;
+
+    private final ObjectNode report;
+
+    PerfReport(PhaseTimings timings, long totalNanos, long peakHeapBytes, String rewriteVersion, String gradleVersion,
+               List<String> activeRecipes) {
+        report = MAPPER.createObjectNode()
+                .put("rewriteVersion", rewriteVersion)
+                .put("gradleVersion", gradleVersion);
+        ArrayNode recipes = report.putArray("activeRecipes");
+        for (String activeRecipe : activeRecipes) {
+            recipes.add(activeRecipe);
+        }
+        report.put("totalMs", TimeUnit.NANOSECONDS.toMillis(totalNanos));
+
+        ObjectNode phases = report.putObject("phasesMs");
+        for (PhaseTimings.Phase phase : PhaseTimings.Phase.values()) {
+            phases.put(phase.key, TimeUnit.NANOSECONDS.toMillis(timings.nanos(phase)));
+        }
+
+        ObjectNode languages = report.putObject("languages");
+        for (Map.Entry<String, Long> parsed : timings.parsedFiles().entrySet()) {
+            long nanos = timings.parseNanos(parsed.getKey());
+            languages.putObject(parsed.getKey())
+                    .put("files", parsed.getValue())
+                    .put("parseMs", TimeUnit.NANOSECONDS.toMillis(nanos))
+                    .put("filesPerSecond", nanos == 0 ? 0 : Math.round(parsed.getValue() * 1e9 / nanos * 10) / 10.0);
+        }
+
+        report.put("peakHeapMb", peakHeapBytes / (1024 * 1024));
+    }
+
+    /**
+     * Write the report, and compare it with the baseline, which this report becomes when there is none yet.
+     *
+     * @param regressionThreshold How many percent longer than in the baseline a phase may take.
+     * @param failOnRegression    Whether to fail, rather than warn, when a phase took longer than that.
+     * @param updateBaseline      Whether this report replaces the baseline.
+     */
+    void write(Path reportPath, Path baselinePath, int regressionThreshold, boolean failOnRegression, boolean updateBaseline) {
+        write(reportPath);
+        logger.lifecycle("Performance report available:");
+        logger.lifecycle("    {}", reportPath.normalize());
+
+        if (updateBaseline || !Files.exists(baselinePath)) {
+            write(baselinePath);
+            logger.lifecycle("Stored the performance report as the baseline for later runs: {}", baselinePath.normalize());
+            return;
+        }
+
+        JsonNode baseline;
+        try {
+            baseline = MAPPER.readTree(baselinePath.toFile());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read the performance baseline " + baselinePath, e);
+        }
+
+        List<String> regressions = new ArrayList<>();
+        JsonNode phases = report.get("phasesMs");
+        for (PhaseTimings.Phase phase : PhaseTimings.Phase.values()) {
+            long current = phases.path(phase.key).asLong();
+            if (!baseline.path("phasesMs").has(phase.key)) {
+                continue;
+            }
+            long previous = baseline.path("phasesMs").path(phase.key).asLong();
+            logger.lifecycle("  {}: {} ms (baseline {} ms)", phase.key, current, previous);
+            if (previous >= MIN_COMPARED_MS && current > previous * (100 + regressionThreshold) / 100) {
+                regressions.add(String.format("%s took %d ms, %d%% longer than the %d ms of the baseline",
+                        phase.key, current, (current - previous) * 100 / previous, previous));
+            }
+        }
+
+        if (regressions.isEmpty()) {
+            logger.lifecycle("No phase took more than {}% longer than in the baseline", regressionThreshold);
+            return;
+        }
+        for (String regression : regressions) {
+            logger.warn(regression);
+        }
+        if (failOnRegression) {
+            throw new RuntimeException(regressions.size() + " phase(s) took more than " + regressionThreshold +
+                                       "% longer than in the performance baseline. See logs for more details.");
+        }
+    }
+
+    private void write(Path path) {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(path.getParent());
+            MAPPER.writerWithDefaultPrettyPrinter().writeValue(temp.toFile(), report);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.gradle.isolated;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The time a rewrite task spent in each of its phases, for {@code rewritePerfReport}. Projects may be parsed
+ * concurrently, so the time of a phase is the sum of the time every thread spent in it, rather than wall time.
+ */
+class PhaseTimings {
+    enum Phase {
+        DISCOVERY("discovery"),
+        CLASSPATH_RESOLUTION("classpathResolution"),
+        PARSE("parse"),
+        AUTODETECT("autodetect"),
+        RECIPE_RUN("recipeRun"),
+        DIFF("diff"),
+        /**
+         * Writing the diffs to the patch of a dry run.
+         */
+        PATCH_WRITE("patchWrite"),
+        /**
+         * Writing the results back to the sources, as {@code rewriteRun} does.
+         */
+        WRITE_BACK("writeBack");
+
+        final String key;
+
+        Phase(String key) {
+            this.key = key;
+        }
+    }
+
+    private final Map<Phase, LongAdder> phases = new EnumMap<>(Phase.class);
+    private final Map<String, LongAdder> parsedFiles = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> parseNanos = new ConcurrentHashMap<>();
+
+    PhaseTimings() {
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, new LongAdder());
+        }
+    }
+
+    /**
+     * @param start The {@link System#nanoTime()} the phase started at.
+     */
+    void record(Phase phase, long start) {
+        add(phase, System.nanoTime() - start);
+    }
+
+    void add(Phase phase, long nanos) {
+        phases.get(phase).add(nanos);
+    }
+
+    void time(Phase phase, Runnable runnable) {
+        long start = System.nanoTime();
+        try {
+            runnable.run();
+        } finally {
+            record(phase, start);
+        }
+    }
+
+    void parsed(String language, long nanos) {
+        add(Phase.PARSE, nanos);
+        parsedFiles.computeIfAbsent(language, l -> new LongAdder()).increment();
+        parseNanos.computeIfAbsent(language, l -> new LongAdder()).add(nanos);
+    }
+
+    long nanos(Phase phase) {
+        return phases.get(phase).sum();
+    }
+
+    /**
+     * @return The number of sources parsed of each language.
+     */
+    Map<String, Long> parsedFiles() {
+        Map<String, Long> files = new TreeMap<>();
+        parsedFiles.forEach((language, count) -> files.put(language, count.sum()));
+        return files;
+    }
+
+    long parseNanos(String language) {
+        LongAdder nanos = parseNanos.get(language);
+        return nanos == null ? 0 : nanos.sum();
+    }
+
+    /**
+     * Samples the heap in use until closed. Each pool of the heap reaches its own peak at a different time, so the sum
+     * of the peak usage of the pools overstates the peak of the heap as a whole. Sampling may miss a peak shorter than
+     * the sampling interval, but never reports more than was in use at once.
+     */
+    static class HeapPeak implements AutoCloseable {
+        private static final long SAMPLE_INTERVAL_MS = 20;
+
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private final AtomicLong peak = new AtomicLong();
+        private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rewrite-heap-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        HeapPeak() {
+            sampler.scheduleAtFixedRate(this::sample, 0, SAMPLE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+
+        private void sample() {
+            long used = memory.getHeapMemoryUsage().getUsed();
+            peak.accumulateAndGet(used, Math::max);
+        }
+
+        /**
+         * @return The most heap in use at once since this was created, in bytes.
+         */
+        long peak() {
+            sample();
+            return peak.get();
+        }
+
+        @Override
+        public void close() {
+            sampler.shutdownNow();
+        }
+    }
+}
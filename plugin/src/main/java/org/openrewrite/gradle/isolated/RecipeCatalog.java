@@ -0,0 +1,214 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.gradle.isolated;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.config.Environment;
+import org.openrewrite.config.OptionDescriptor;
+import org.openrewrite.config.RecipeDescriptor;
+import org.openrewrite.style.NamedStyles;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * The names, descriptions and options of every recipe, and the names of every style, available from one recipe
+ * classpath and configuration file. Listing these from the environment requires instantiating every recipe, so the
+ * catalog is kept on disk and only built again when the classpath or configuration changes.
+ */
+class RecipeCatalog {
+    private static final Logger logger = Logging.getLogger(RecipeCatalog.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final List<RecipeEntry> recipes;
+    private final List<String> styles;
+
+    private RecipeCatalog(List<RecipeEntry> recipes, List<String> styles) {
+        this.recipes = recipes;
+        this.styles = styles;
+    }
+
+    /**
+     * Read the catalog kept at {@code file}, or build it from the environment and keep it there.
+     *
+     * @param file        Named after everything the environment was loaded from, so that a catalog which exists is
+     *                    always up-to-date.
+     * @param environment Loads the environment, only if the catalog has to be built.
+     */
+    static RecipeCatalog load(Path file, Supplier<Environment> environment) {
+        RecipeCatalog catalog = read(file);
+        if (catalog != null) {
+            logger.info("Read the recipe catalog from {}", file);
+            return catalog;
+        }
+        catalog = build(environment.get());
+        catalog.write(file);
+        return catalog;
+    }
+
+    List<RecipeEntry> getRecipes() {
+        return recipes;
+    }
+
+    List<String> getStyles() {
+        return styles;
+    }
+
+    private static RecipeCatalog build(Environment environment) {
+        List<RecipeEntry> recipes = new ArrayList<>();
+        for (RecipeDescriptor descriptor : environment.listRecipeDescriptors()) {
+            List<Option> options = new ArrayList<>(descriptor.getOptions().size());
+            for (OptionDescriptor option : descriptor.getOptions()) {
+                options.add(new Option(option.getName(), option.getType(), option.getDisplayName(),
+                        option.getDescription(), option.isRequired()));
+            }
+            recipes.add(new RecipeEntry(descriptor.getName(), descriptor.getDisplayName(), descriptor.getDescription(), options));
+        }
+        List<String> styles = new ArrayList<>();
+        for (NamedStyles style : environment.listStyles()) {
+            styles.add(style.getName());
+        }
+        return new RecipeCatalog(recipes, styles);
+    }
+
+    private static @Nullable RecipeCatalog read(Path file) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            JsonNode catalog = MAPPER.readTree(file.toFile());
+            List<RecipeEntry> recipes = new ArrayList<>();
+            for (JsonNode recipe : catalog.path("recipes")) {
+                List<Option> options = new ArrayList<>();
+                for (JsonNode option : recipe.path("options")) {
+                    options.add(new Option(
+                            option.path("name").asText(),
+                            option.path("type").asText(),
+                            textOrNull(option.path("displayName")),
+                            textOrNull(option.path("description")),
+                            option.path("required").asBoolean()));
+                }
+                recipes.add(new RecipeEntry(
+                        recipe.path("name").asText(),
+                        recipe.path("displayName").asText(),
+                        recipe.path("description").asText(),
+                        options));
+            }
+            List<String> styles = new ArrayList<>();
+            for (JsonNode style : catalog.path("styles")) {
+                styles.add(style.asText());
+            }
+            return new RecipeCatalog(Collections.unmodifiableList(recipes), Collections.unmodifiableList(styles));
+        } catch (IOException | RuntimeException e) {
+            // Treated as missing, and overwritten once the catalog is built again
+            logger.debug("Unable to read the recipe catalog {}", file, e);
+            return null;
+        }
+    }
+
+    private void write(Path file) {
+        ObjectNode catalog = MAPPER.createObjectNode();
+        ArrayNode recipesNode = catalog.putArray("recipes");
+        for (RecipeEntry recipe : recipes) {
+            ObjectNode recipeNode = recipesNode.addObject()
+                    .put("name", recipe.name)
+                    .put("displayName", recipe.displayName)
+                    .put("description", recipe.description);
+            ArrayNode optionsNode = recipeNode.putArray("options");
+            for (Option option : recipe.options) {
+                optionsNode.addObject()
+                        .put("name", option.name)
+                        .put("type", option.type)
+                        .put("displayName", option.displayName)
+                        .put("description", option.description)
+                        .put("required", option.required);
+            }
+        }
+        ArrayNode stylesNode = catalog.putArray("styles");
+        for (String style : styles) {
+            stylesNode.add(style);
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            Files.createDirectories(file.getParent());
+            MAPPER.writeValue(temp.toFile(), catalog);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // The catalog is built again next time
+            logger.debug("Unable to write the recipe catalog {}", file, e);
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static @Nullable String textOrNull(JsonNode node) {
+        return node.isNull() || node.isMissingNode() ? null : node.asText();
+    }
+
+    static class RecipeEntry {
+        private final String name;
+        private final String displayName;
+        private final String description;
+        private final List<Option> options;
+
+        private RecipeEntry(String name, String displayName, String description, List<Option> options) {
+            this.name = name;
+            this.displayName = displayName;
+            this.description = description;
+            this.options = options;
+        }
+
+        String getName() {
+            return name;
+        }
+    }
+
+    static class Option {
+        private final String name;
+        private final String type;
+
+        @Nullable
+        private final String displayName;
+
+        @Nullable
+        private final String description;
+
+        private final boolean required;
+
+        private Option(String name, String type, @Nullable String displayName, @Nullable String description, boolean required) {
+            this.name = name;
+            this.type = type;
+            this.displayName = displayName;
+            this.description = description;
+            this.required = required;
+        }
+    }
+}
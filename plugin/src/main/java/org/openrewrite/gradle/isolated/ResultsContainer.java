@@ -18,7 +18,6 @@ package org.openrewrite.gradle.isolated;
 import org.jspecify.annotations.Nullable;
 import org.openrewrite.*;
 import org.openrewrite.marker.Marker;
-import org.openrewrite.marker.Markers;
 import org.openrewrite.marker.Markup;
 import org.openrewrite.marker.SearchResult;
 
@@ -26,41 +25,141 @@ import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
 import java.util.function.UnaryOperator;
 import java.util.stream.Stream;
 
 public class ResultsContainer {
     final Path projectRoot;
+
+    @Nullable
     final RecipeRun recipeRun;
     final List<Result> generated = new ArrayList<>();
     final List<Result> deleted = new ArrayList<>();
     final List<Result> moved = new ArrayList<>();
-    final List<Result> refactoredInPlace = new ArrayList<>();
+
+    /**
+     * Results which keep their source path, including those whose printed output turns out not to have changed.
+     */
+    final List<Result> refactoredInPlaceCandidates = new ArrayList<>();
+
+    @Nullable
+    private List<Result> refactoredInPlace;
+
+    private final Map<Result, Boolean> refactoredInPlaceClassifications = new IdentityHashMap<>();
 
     public ResultsContainer(Path projectRoot, @Nullable RecipeRun recipeRun) {
+        this(projectRoot, recipeRun, recipeRun == null ? Collections.emptyList() : recipeRun.getChangeset().getAllResults());
+    }
+
+    /**
+     * For results gathered from several runs of the same recipe over different sources.
+     */
+    public ResultsContainer(Path projectRoot, List<Result> results) {
+        this(projectRoot, null, results);
+    }
+
+    private ResultsContainer(Path projectRoot, @Nullable RecipeRun recipeRun, List<Result> results) {
         this.projectRoot = projectRoot;
         this.recipeRun = recipeRun;
-        if (recipeRun != null) {
-            for (Result result : recipeRun.getChangeset().getAllResults()) {
-                if (result.getBefore() == null && result.getAfter() == null) {
-                    // This situation shouldn't happen / makes no sense
-                    continue;
-                }
-                if (result.getBefore() == null && result.getAfter() != null) {
-                    generated.add(result);
-                } else if (result.getBefore() != null && result.getAfter() == null) {
-                    deleted.add(result);
-                } else if (result.getBefore() != null && !result.getBefore().getSourcePath().equals(result.getAfter().getSourcePath())) {
-                    moved.add(result);
-                } else {
-                    if (!result.diff(Paths.get(""), new FencedMarkerPrinter(), true).isEmpty()) {
-                        refactoredInPlace.add(result);
-                    }
+        for (Result result : results) {
+            if (result.getBefore() == null && result.getAfter() == null) {
+                // This situation shouldn't happen / makes no sense
+                continue;
+            }
+            if (result.getBefore() == null && result.getAfter() != null) {
+                generated.add(result);
+            } else if (result.getBefore() != null && result.getAfter() == null) {
+                deleted.add(result);
+            } else if (result.getBefore() != null && !result.getBefore().getSourcePath().equals(result.getAfter().getSourcePath())) {
+                moved.add(result);
+            } else {
+                refactoredInPlaceCandidates.add(result);
+            }
+        }
+    }
+
+    /**
+     * The results which change a source file without moving it. Telling these apart from results which make no
+     * visible change requires printing them, so it is only done the first time they are asked for.
+     */
+    public List<Result> getRefactoredInPlace() {
+        if (refactoredInPlace == null) {
+            List<Result> changed = new ArrayList<>(refactoredInPlaceCandidates.size());
+            for (Result result : refactoredInPlaceCandidates) {
+                if (isRefactoredInPlace(result)) {
+                    changed.add(result);
                 }
             }
+            refactoredInPlace = changed;
+        }
+        return refactoredInPlace;
+    }
+
+    /**
+     * Whether a result which keeps its source path changes what is printed for it, other than whitespace within its
+     * lines. This gives the same answer as checking for an empty diff which ignores all whitespace, since such a diff
+     * is only empty when both sides print the same lines once their whitespace is removed, without computing one.
+     */
+    boolean isRefactoredInPlace(Result result) {
+        Boolean refactored = refactoredInPlaceClassifications.get(result);
+        if (refactored == null) {
+            SourceFile before = result.getBefore();
+            SourceFile after = result.getAfter();
+            refactored = before != after && (before == null || after == null ||
+                                             !equalIgnoringWhitespace(printFenced(before), printFenced(after)));
+            refactoredInPlaceClassifications.put(result, refactored);
+        }
+        return refactored;
+    }
+
+    /**
+     * Compare line by line, ignoring all whitespace within each line, as a diff ignoring all whitespace does.
+     * A line added or removed is a change, even when it is blank.
+     */
+    private static boolean equalIgnoringWhitespace(String before, String after) {
+        if (before.equals(after)) {
+            return true;
+        }
+        List<String> beforeLines = lines(before);
+        List<String> afterLines = lines(after);
+        if (beforeLines.size() != afterLines.size()) {
+            return false;
+        }
+        for (int i = 0; i < beforeLines.size(); i++) {
+            if (!withoutWhitespace(beforeLines.get(i)).equals(withoutWhitespace(afterLines.get(i)))) {
+                return false;
+            }
         }
+        return true;
+    }
+
+    private static List<String> lines(String text) {
+        List<String> lines = new ArrayList<>(Arrays.asList(text.split("\n", -1)));
+        // A newline at the end of the text ends the last line rather than starting another one
+        if (lines.size() > 1 && lines.get(lines.size() - 1).isEmpty()) {
+            lines.remove(lines.size() - 1);
+        }
+        return lines;
+    }
+
+    private static String withoutWhitespace(String line) {
+        StringBuilder stripped = new StringBuilder(line.length());
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c != ' ' && c != '\t' && c != '\r' && c != '\f') {
+                stripped.append(c);
+            }
+        }
+        return stripped.toString();
+    }
+
+    private static String printFenced(SourceFile sourceFile) {
+        return sourceFile.printAll(new PrintOutputCapture<>(0, new FencedMarkerPrinter()));
     }
 
     /**
@@ -79,44 +178,96 @@ public class ResultsContainer {
     }
 
     public @Nullable RuntimeException getFirstException() {
-        for (Result result : generated) {
-            for (RuntimeException error : getRecipeErrors(result)) {
-                return error;
-            }
-        }
-        for (Result result : deleted) {
-            for (RuntimeException error : getRecipeErrors(result)) {
+        return getFirstException(1);
+    }
+
+    /**
+     * Scan the results for recipe errors on up to {@code parallelism} threads, giving up on every result after the
+     * first one found to carry an error.
+     *
+     * @return The first error in the order the results are reported.
+     */
+    public @Nullable RuntimeException getFirstException(int parallelism) {
+        List<Result> results = new ArrayList<>(generated.size() + deleted.size() + moved.size() + refactoredInPlaceCandidates.size());
+        results.addAll(generated);
+        results.addAll(deleted);
+        results.addAll(moved);
+        // A result carrying an error marker always prints differently, so there is no need to classify them first
+        results.addAll(refactoredInPlaceCandidates);
+
+        // The index of the earliest result known to carry an error. Results after it needn't be scanned any further.
+        AtomicInteger firstError = new AtomicInteger(Integer.MAX_VALUE);
+        ThreadLocal<ErrorScanner> scanners = ThreadLocal.withInitial(ErrorScanner::new);
+        List<Callable<@Nullable RuntimeException>> scans = new ArrayList<>(results.size());
+        for (int i = 0; i < results.size(); i++) {
+            int index = i;
+            Result result = results.get(i);
+            scans.add(() -> {
+                if (firstError.get() < index) {
+                    return null;
+                }
+                RuntimeException error = scanners.get().scan(result.getAfter(), () -> firstError.get() < index);
+                if (error != null) {
+                    firstError.accumulateAndGet(index, Math::min);
+                }
                 return error;
-            }
+            });
         }
-        for (Result result : moved) {
-            for (RuntimeException error : getRecipeErrors(result)) {
-                return error;
+
+        if (parallelism <= 1 || scans.size() <= 1) {
+            for (Callable<@Nullable RuntimeException> scan : scans) {
+                try {
+                    RuntimeException error = scan.call();
+                    if (error != null) {
+                        return error;
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
             }
+            return null;
         }
-        for (Result result : refactoredInPlace) {
-            for (RuntimeException error : getRecipeErrors(result)) {
-                return error;
+        try (WorkerPool pool = new WorkerPool("rewrite-error-scan", parallelism)) {
+            for (RuntimeException error : pool.invokeAll(scans)) {
+                if (error != null) {
+                    return error;
+                }
             }
+            return null;
         }
-        return null;
     }
 
-    private List<RuntimeException> getRecipeErrors(Result result) {
-        List<RuntimeException> exceptions = new ArrayList<>();
-        new TreeVisitor<Tree, Integer>() {
-            @Override
-            public Tree preVisit(Tree tree, Integer integer) {
-                Markers markers = tree.getMarkers();
-                markers.findFirst(Markup.Error.class).ifPresent(e -> {
-                    Optional<SourceFile> sourceFile = Optional.ofNullable(getCursor().firstEnclosing(SourceFile.class));
-                    String sourcePath = sourceFile.map(SourceFile::getSourcePath).map(Path::toString).orElse("<unknown>");
-                    exceptions.add(new RuntimeException("Error while visiting " + sourcePath + ": " + e.getDetail()));
-                });
+    /**
+     * Finds the first {@link Markup.Error} marker of a tree. Each thread reuses one scanner for every tree it is given.
+     */
+    private static class ErrorScanner extends TreeVisitor<Tree, AtomicReference<@Nullable RuntimeException>> {
+        private BooleanSupplier earlierErrorFound = () -> false;
+
+        /**
+         * @param earlierErrorFound Whether an error has turned up in a result reported before this one,
+         *                          which makes scanning the rest of this tree pointless.
+         */
+        @Nullable
+        RuntimeException scan(@Nullable SourceFile sourceFile, BooleanSupplier earlierErrorFound) {
+            this.earlierErrorFound = earlierErrorFound;
+            AtomicReference<@Nullable RuntimeException> error = new AtomicReference<>();
+            visit(sourceFile, error);
+            return error.get();
+        }
+
+        @Override
+        public Tree preVisit(Tree tree, AtomicReference<@Nullable RuntimeException> error) {
+            if (error.get() != null || earlierErrorFound.getAsBoolean()) {
+                stopAfterPreVisit();
                 return tree;
             }
-        }.visit(result.getAfter(), 0);
-        return exceptions;
+            tree.getMarkers().findFirst(Markup.Error.class).ifPresent(e -> {
+                Optional<SourceFile> sourceFile = Optional.ofNullable(getCursor().firstEnclosing(SourceFile.class));
+                String sourcePath = sourceFile.map(SourceFile::getSourcePath).map(Path::toString).orElse("<unknown>");
+                error.set(new RuntimeException("Error while visiting " + sourcePath + ": " + e.getDetail()));
+            });
+            return tree;
+        }
     }
 
     public Path getProjectRoot() {
@@ -124,7 +275,7 @@ public class ResultsContainer {
     }
 
     public boolean isNotEmpty() {
-        return !generated.isEmpty() || !deleted.isEmpty() || !moved.isEmpty() || !refactoredInPlace.isEmpty();
+        return !generated.isEmpty() || !deleted.isEmpty() || !moved.isEmpty() || !getRefactoredInPlace().isEmpty();
     }
 
     /**
@@ -0,0 +1,335 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.gradle.isolated;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.*;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.gradle.api.Project;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.plugins.ExtraPropertiesExtension;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.DataTable;
+import org.openrewrite.RecipeRun;
+import org.openrewrite.Result;
+import org.openrewrite.SourceFile;
+import org.openrewrite.config.RecipeDescriptor;
+import org.openrewrite.gradle.RewriteExtension;
+import org.openrewrite.internal.ObjectMappers;
+import org.openrewrite.table.RecipeRunStats;
+
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Records the meters which {@code scripts/grafana-dashboard.json} charts, each tagged with the name of the project it
+ * concerns:
+ * <ul>
+ *     <li>{@code rewrite.parse}, the time taken to parse each source, by language.</li>
+ *     <li>{@code rewrite.evaluated.source.files}, the number of sources each project contributed to the recipe run.</li>
+ *     <li>{@code rewrite.refactor.plan}, the time taken to run the active recipes, and
+ *     {@code rewrite.refactor.plan.changes}, the number of sources each recipe changed.</li>
+ *     <li>{@code rewrite.refactor.visit}, the time each recipe spent scanning and editing sources.</li>
+ * </ul>
+ * With the default {@code LOG} {@link RewriteExtension#getMetricsUri() metrics URI}, the meters are logged when the
+ * task finishes. Otherwise they are recorded into the registry of the {@code org.openrewrite.rewrite-metrics} plugin,
+ * through the {@code Function<Map<String, String>, DoubleConsumer>} it keeps in the root project's
+ * {@value #RECORDER_PROPERTY} extra property, and published by that plugin. Without that plugin they aren't recorded
+ * at all.
+ */
+class RewriteMetrics implements AutoCloseable {
+    private static final Logger logger = Logging.getLogger(RewriteMetrics.class);
+
+    static final String RECORDER_PROPERTY = "rewriteMetricsRecorder";
+
+    private static final ObjectMapper MAPPER = ObjectMappers.propertyBasedMapper(RewriteMetrics.class.getClassLoader());
+
+    private static final DoubleConsumer NOT_RECORDED = value -> {
+    };
+
+    /**
+     * The build already warned that its metrics can't be published, so that the warning isn't repeated by every
+     * rewrite task of the build.
+     */
+    private static WeakReference<Object> warnedBuild = new WeakReference<>(null);
+
+    private final Project project;
+    private final PhaseTimings timings;
+    private final Function<Map<String, String>, DoubleConsumer> recorder;
+
+    @Nullable
+    private final MeterRegistry logRegistry;
+
+    private final Map<Map<String, String>, DoubleConsumer> meters = new ConcurrentHashMap<>();
+
+    /**
+     * @param timings Also told how long each source took to parse.
+     */
+    RewriteMetrics(RewriteExtension extension, Project project, PhaseTimings timings) {
+        this.project = project;
+        this.timings = timings;
+        if (extension.isRouteMetricsToLog()) {
+            MeterRegistry registry = new SimpleMeterRegistry();
+            this.logRegistry = registry;
+            this.recorder = meter -> register(registry, meter);
+        } else {
+            this.logRegistry = null;
+            this.recorder = recorder(extension, project);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Function<Map<String, String>, DoubleConsumer> recorder(RewriteExtension extension, Project project) {
+        ExtraPropertiesExtension extraProperties = project.getRootProject().getExtensions().getExtraProperties();
+        if (extraProperties.has(RECORDER_PROPERTY)) {
+            Object recorder = extraProperties.get(RECORDER_PROPERTY);
+            if (recorder instanceof Function) {
+                return (Function<Map<String, String>, DoubleConsumer>) recorder;
+            }
+        }
+        synchronized (RewriteMetrics.class) {
+            if (warnedBuild.get() != project.getGradle()) {
+                warnedBuild = new WeakReference<>(project.getGradle());
+                logger.warn("Metrics can't be published to {} unless the org.openrewrite.rewrite-metrics plugin is applied to the root project",
+                        extension.getMetricsUri());
+            }
+        }
+        return meter -> NOT_RECORDED;
+    }
+
+    /**
+     * Time how long each source of a project takes to come out of {@code parsed}. Only the time spent producing
+     * a source is counted, not the time its consumer spends on it.
+     */
+    Stream<SourceFile> timeParse(Project subproject, Stream<SourceFile> parsed) {
+        TimedSpliterator timed = new TimedSpliterator(
+                language -> meter("timer", "rewrite.parse", "The time taken to parse a source", subproject,
+                        "language", language),
+                meter("summary", "rewrite.evaluated.source.files",
+                        "The number of sources a project contributed to the recipe run", subproject),
+                timings, parsed.spliterator());
+        return StreamSupport.stream(timed, false).onClose(parsed::close);
+    }
+
+    /**
+     * @return When the recipe run started, to pass to {@link #recipeRunFinished(long, String)}.
+     */
+    long startRecipeRun() {
+        return System.nanoTime();
+    }
+
+    void recipeRunFinished(long start, String outcome) {
+        meter("timer", "rewrite.refactor.plan", "The time taken to run the active recipes", project,
+                "outcome", outcome).accept(System.nanoTime() - start);
+    }
+
+    /**
+     * Record how long each recipe of a run spent visiting sources, as reported by the run's recipe statistics.
+     */
+    void recordRecipeRun(RecipeRun recipeRun) {
+        for (Map.Entry<DataTable<?>, List<?>> dataTable : recipeRun.getDataTables().entrySet()) {
+            if (!(dataTable.getKey() instanceof RecipeRunStats)) {
+                continue;
+            }
+            for (Object row : dataTable.getValue()) {
+                Map<?, ?> stats = MAPPER.convertValue(row, Map.class);
+                Object recipe = stats.get("recipe");
+                if (recipe == null) {
+                    continue;
+                }
+                long nanos = nanos(stats.get("scanTotalTime")) + nanos(stats.get("editTotalTime"));
+                meter("timer", "rewrite.refactor.visit", "The time a recipe spent scanning and editing sources", project,
+                        "visitor", recipe.toString()).accept(nanos);
+            }
+        }
+    }
+
+    void recordResults(List<Result> results) {
+        for (Result result : results) {
+            for (RecipeDescriptor recipe : result.getRecipeDescriptorsThatMadeChanges()) {
+                meter("counter", "rewrite.refactor.plan.changes", "The number of sources a recipe changed", project,
+                        "visitor", recipe.getName()).accept(1);
+            }
+        }
+    }
+
+    /**
+     * @param tags Alternating tag keys and values, in addition to the name of {@code project}.
+     * @return What to record values of the meter into, as described by the {@code org.openrewrite.rewrite-metrics}
+     * plugin.
+     */
+    private DoubleConsumer meter(String type, String name, String description, Project project, String... tags) {
+        Map<String, String> meter = new HashMap<>();
+        meter.put("type", type);
+        meter.put("name", name);
+        meter.put("description", description);
+        meter.put("histogram", Boolean.toString("rewrite.parse".equals(name)));
+        meter.put("tag.project.name", project.getName());
+        for (int i = 0; i < tags.length; i += 2) {
+            meter.put("tag." + tags[i], tags[i + 1]);
+        }
+        return meters.computeIfAbsent(meter, recorder);
+    }
+
+    private static DoubleConsumer register(MeterRegistry registry, Map<String, String> meter) {
+        List<Tag> tags = new ArrayList<>();
+        for (Map.Entry<String, String> entry : meter.entrySet()) {
+            if (entry.getKey().startsWith("tag.")) {
+                tags.add(Tag.of(entry.getKey().substring("tag.".length()), entry.getValue()));
+            }
+        }
+        switch (meter.get("type")) {
+            case "timer": {
+                Timer timer = Timer.builder(meter.get("name")).tags(tags).register(registry);
+                return nanos -> timer.record((long) nanos, TimeUnit.NANOSECONDS);
+            }
+            case "summary":
+                return DistributionSummary.builder(meter.get("name")).tags(tags).register(registry)::record;
+            default:
+                return Counter.builder(meter.get("name")).tags(tags).register(registry)::increment;
+        }
+    }
+
+    private static long nanos(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+
+    static String language(SourceFile sourceFile) {
+        Class<?> type = sourceFile.getClass().getEnclosingClass() == null ?
+                sourceFile.getClass() :
+                sourceFile.getClass().getEnclosingClass();
+        switch (type.getSimpleName()) {
+            case "J":
+                return "java";
+            case "K":
+                return "kotlin";
+            case "G":
+                return "groovy";
+            case "PlainText":
+                return "text";
+            default:
+                return type.getSimpleName().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * Log the meters this task recorded, when they are routed to the log. Meters recorded into the
+     * {@code org.openrewrite.rewrite-metrics} plugin are published by that plugin.
+     */
+    @Override
+    public void close() {
+        if (logRegistry != null) {
+            for (Meter meter : logRegistry.getMeters()) {
+                logger.info("{}", describe(meter));
+            }
+            logRegistry.clear();
+        }
+        meters.clear();
+    }
+
+    private static String describe(Meter meter) {
+        StringBuilder description = new StringBuilder(meter.getId().getName());
+        StringJoiner tags = new StringJoiner(",", "{", "}");
+        for (Tag tag : meter.getId().getTags()) {
+            tags.add(tag.getKey() + "=" + tag.getValue());
+        }
+        description.append(tags);
+        if (meter instanceof Timer) {
+            Timer timer = (Timer) meter;
+            description.append(String.format(" count=%d total=%.3fs mean=%.3fs max=%.3fs",
+                    timer.count(),
+                    timer.totalTime(TimeUnit.SECONDS),
+                    timer.mean(TimeUnit.SECONDS),
+                    timer.max(TimeUnit.SECONDS)));
+        } else if (meter instanceof DistributionSummary) {
+            DistributionSummary summary = (DistributionSummary) meter;
+            description.append(String.format(" count=%d total=%.0f max=%.0f",
+                    summary.count(), summary.totalAmount(), summary.max()));
+        } else if (meter instanceof Counter) {
+            description.append(String.format(" count=%.0f", ((Counter) meter).count()));
+        }
+        return description.toString();
+    }
+
+    /**
+     * Times each source as it is taken from the parser, and counts a project's sources once they are exhausted.
+     */
+    private static class TimedSpliterator implements Spliterator<SourceFile> {
+        private final Function<String, DoubleConsumer> parseTimer;
+        private final DoubleConsumer sourceCount;
+        private final PhaseTimings timings;
+        private final Spliterator<SourceFile> delegate;
+        private final Map<String, DoubleConsumer> timers = new HashMap<>();
+        private long count;
+        private boolean done;
+
+        private SourceFile next;
+
+        TimedSpliterator(Function<String, DoubleConsumer> parseTimer, DoubleConsumer sourceCount, PhaseTimings timings,
+                         Spliterator<SourceFile> delegate) {
+            this.parseTimer = parseTimer;
+            this.sourceCount = sourceCount;
+            this.timings = timings;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super SourceFile> action) {
+            if (done) {
+                return false;
+            }
+            long start = System.nanoTime();
+            if (!delegate.tryAdvance(sourceFile -> next = sourceFile)) {
+                done = true;
+                sourceCount.accept(count);
+                return false;
+            }
+            long elapsed = System.nanoTime() - start;
+            SourceFile sourceFile = next;
+            next = null;
+            count++;
+            String language = language(sourceFile);
+            timings.parsed(language, elapsed);
+            timers.computeIfAbsent(language, parseTimer).accept(elapsed);
+            action.accept(sourceFile);
+            return true;
+        }
+
+        @Override
+        public @Nullable Spliterator<SourceFile> trySplit() {
+            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return delegate.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return delegate.characteristics() & (ORDERED | NONNULL);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.gradle.isolated;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.*;
+import org.openrewrite.config.DeclarativeRecipe;
+import org.openrewrite.internal.InMemoryLargeSourceSet;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Runs a recipe over batches of sources as they come out of the parser, rather than once every source has been
+ * parsed, so that parsing and running the recipe overlap and only the sources of the batch being run are held on the
+ * heap, along with the results.
+ * <p>
+ * This is only equivalent to running the recipe over every source at once when each source is changed by looking at
+ * that source alone, so a recipe which includes any scanning recipe, or is guarded by a scanning precondition, is never
+ * run this way.
+ * <p>
+ * Sources are held back until the style of their language settles, but no more than a batch of them, after which
+ * they are run with the style detected so far. When every source is sampled, the style of the early sources may
+ * therefore differ from the style detected from all of them.
+ */
+class StreamingRecipeRun {
+    private static final Logger logger = Logging.getLogger(StreamingRecipeRun.class);
+
+    private static final int BATCH_SIZE = 128;
+
+    private StreamingRecipeRun() {
+    }
+
+    /**
+     * @return Whether every recipe in the recipe graph, and every precondition guarding one, changes each source by
+     * looking at that source alone.
+     */
+    static boolean canStream(Recipe recipe) {
+        if (recipe instanceof DeclarativeRecipe) {
+            // A declarative recipe is itself a scanning recipe only in order to evaluate its preconditions, which would
+            // only ever see the batch being run if any of them scans
+            List<Recipe> preconditions = preconditions((DeclarativeRecipe) recipe);
+            if (preconditions == null) {
+                logger.info("Running recipes once every source has been parsed, as the preconditions of {} can't be inspected", recipe.getName());
+                return false;
+            }
+            for (Recipe precondition : preconditions) {
+                if (scans(precondition)) {
+                    logger.info("Running recipes once every source has been parsed, as the precondition {} of {} needs to scan every source first",
+                            precondition.getName(), recipe.getName());
+                    return false;
+                }
+            }
+        } else if (recipe instanceof ScanningRecipe) {
+            logger.info("Running recipes once every source has been parsed, as {} needs to scan every source first", recipe.getName());
+            return false;
+        }
+        for (Recipe child : recipe.getRecipeList()) {
+            if (!canStream(child)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean scans(Recipe recipe) {
+        if (recipe instanceof ScanningRecipe) {
+            return true;
+        }
+        for (Recipe child : recipe.getRecipeList()) {
+            if (scans(child)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The preconditions of a declarative recipe, or {@code null} when they can't be told, in which case it is
+     * not safe to stream the recipe.
+     */
+    @SuppressWarnings("unchecked")
+    private static @Nullable List<Recipe> preconditions(DeclarativeRecipe recipe) {
+        try {
+            List<Recipe> preconditions = new ArrayList<>();
+            for (String name : new String[]{"preconditions", "uninitializedPreconditions"}) {
+                Field field = DeclarativeRecipe.class.getDeclaredField(name);
+                field.setAccessible(true);
+                preconditions.addAll((List<Recipe>) field.get(recipe));
+            }
+            return preconditions;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param parsed Sources as they are parsed, which are sampled for their style here.
+     * @param timings Where the time spent running the recipe over each batch is recorded, which leaves out the time
+     *                spent waiting for the parser.
+     * @param onRecipeRun Called with the run of every batch.
+     * @return The results of every batch.
+     */
+    static List<Result> run(Recipe recipe, Stream<SourceFile> parsed, StyleDetection styleDetection, ExecutionContext ctx,
+                            PhaseTimings timings, Consumer<RecipeRun> onRecipeRun) {
+        List<Result> results = new ArrayList<>();
+        List<SourceFile> batch = new ArrayList<>(BATCH_SIZE);
+        // Sources whose language's style is still being detected
+        List<SourceFile> unsettled = new ArrayList<>();
+        int batches = 0;
+
+        Iterator<SourceFile> sources = parsed.iterator();
+        while (sources.hasNext()) {
+            SourceFile sourceFile = sources.next();
+            styleDetection.sample(sourceFile);
+            if (styleDetection.isSettled(sourceFile)) {
+                batch.add(sourceFile);
+            } else {
+                unsettled.add(sourceFile);
+            }
+            if (batch.size() >= BATCH_SIZE) {
+                run(recipe, styleDetection.applySettledLazily(sourceSet(batch)), ctx, timings, onRecipeRun, results);
+                batches++;
+                batch = new ArrayList<>(BATCH_SIZE);
+                // Styles settle as sampling progresses, so held back sources are checked again after every batch
+                List<SourceFile> stillUnsettled = new ArrayList<>();
+                for (SourceFile held : unsettled) {
+                    if (styleDetection.isSettled(held)) {
+                        batch.add(held);
+                    } else {
+                        stillUnsettled.add(held);
+                    }
+                }
+                unsettled = stillUnsettled;
+            }
+            if (unsettled.size() >= BATCH_SIZE) {
+                // When every source is sampled, no style settles before the parse is complete, so rather than holding
+                // back every source, these are run with the style detected from the sources sampled so far
+                run(recipe, styleDetection.applyDetectedSoFarLazily(sourceSet(unsettled)), ctx, timings, onRecipeRun, results);
+                batches++;
+                unsettled = new ArrayList<>(BATCH_SIZE);
+            }
+        }
+
+        // Every style is known once the parse is complete
+        styleDetection.styles();
+        batch.addAll(unsettled);
+        for (int i = 0; i < batch.size(); i += BATCH_SIZE) {
+            List<SourceFile> last = batch.subList(i, Math.min(batch.size(), i + BATCH_SIZE));
+            run(recipe, styleDetection.applySettledLazily(sourceSet(last)), ctx, timings, onRecipeRun, results);
+            batches++;
+        }
+        logger.info("Ran the active recipes over {} batches of sources as they were parsed", batches);
+        return results;
+    }
+
+    private static LargeSourceSet sourceSet(List<SourceFile> sources) {
+        return new InMemoryLargeSourceSet(new ArrayList<>(sources));
+    }
+
+    private static void run(Recipe recipe, LargeSourceSet sourceSet, ExecutionContext ctx, PhaseTimings timings,
+                            Consumer<RecipeRun> onRecipeRun, List<Result> results) {
+        long start = System.nanoTime();
+        RecipeRun recipeRun = recipe.run(sourceSet, ctx);
+        timings.record(PhaseTimings.Phase.RECIPE_RUN, start);
+        onRecipeRun.accept(recipeRun);
+        results.addAll(recipeRun.getChangeset().getAllResults());
+    }
+}
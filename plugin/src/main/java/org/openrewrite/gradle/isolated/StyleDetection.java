@@ -0,0 +1,564 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.gradle.isolated;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.*;
+import org.openrewrite.gradle.RewriteExtension;
+import org.openrewrite.internal.ObjectMappers;
+import org.openrewrite.java.tree.J;
+import org.openrewrite.kotlin.tree.K;
+import org.openrewrite.marker.Marker;
+import org.openrewrite.marker.Markers;
+import org.openrewrite.style.NamedStyles;
+import org.openrewrite.xml.tree.Xml;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Detects the formatting styles of the Java, Kotlin and XML sources as they are parsed.
+ * <p>
+ * A detector can't be split up and its statistics merged afterwards, so rather than sharing sources out between
+ * threads, each language's detector samples its sources on a thread of its own, off the thread consuming the parse.
+ * The detected styles are then only added to a source when a recipe first visits it, rather than to every source
+ * before the recipe run starts.
+ * <p>
+ * Every source is sampled, unless {@link RewriteExtension#getAutodetectMaxSamples()} is set. Then only that many
+ * sources of each language are sampled, and sampling stops earlier once more samples no longer change the detected
+ * style. As the sources sampled then decide the style alone, it may be kept under {@code build/rewrite} and reused for
+ * as long as none of them have changed.
+ */
+class StyleDetection implements AutoCloseable {
+    private static final Logger logger = Logging.getLogger(StyleDetection.class);
+
+    private static final int BATCH_SIZE = 64;
+
+    /**
+     * How many batches of each language may wait to be sampled, so that a slow detector holds back the parse
+     * rather than keeping its sources on the heap.
+     */
+    private static final int MAX_PENDING_BATCHES = 16;
+
+    /**
+     * How many sources are sampled between checks of whether the detected style has stopped changing.
+     */
+    private static final int STABILITY_INTERVAL = 100;
+
+    private static final ObjectMapper MAPPER = ObjectMappers.propertyBasedMapper(StyleDetection.class.getClassLoader());
+    private static final ObjectWriter STYLES_WRITER = MAPPER.writerFor(NamedStyles.class);
+    private static final ObjectReader STYLES_READER = MAPPER.readerFor(NamedStyles.class);
+
+    private final Lane java;
+    private final Lane kotlin;
+    private final Lane xml;
+
+    @Nullable
+    private Map<Class<? extends SourceFile>, NamedStyles> stylesByType;
+
+    /**
+     * @param cacheDirectory Where detected styles are kept between runs, or {@code null} not to keep them.
+     */
+    StyleDetection(RewriteExtension extension, Path baseDir, @Nullable Path cacheDirectory) {
+        org.openrewrite.java.style.Autodetect.Detector javaDetector = org.openrewrite.java.style.Autodetect.detector();
+        org.openrewrite.kotlin.style.Autodetect.Detector kotlinDetector = org.openrewrite.kotlin.style.Autodetect.detector();
+        org.openrewrite.xml.style.Autodetect.Detector xmlDetector = org.openrewrite.xml.style.Autodetect.detector();
+        LaneSettings settings = new LaneSettings(extension, baseDir, cacheDirectory);
+        this.java = new Lane("java", javaDetector::sample, javaDetector::build, settings);
+        this.kotlin = new Lane("kotlin", kotlinDetector::sample, kotlinDetector::build, settings);
+        this.xml = new Lane("xml", xmlDetector::sample, xmlDetector::build, settings);
+    }
+
+    void sample(SourceFile sourceFile) {
+        Lane lane = laneOf(sourceFile);
+        if (lane != null) {
+            lane.sample(sourceFile);
+        }
+    }
+
+    /**
+     * @return Whether the style of this source's language is already known, before every source has been sampled.
+     */
+    boolean isSettled(SourceFile sourceFile) {
+        Lane lane = laneOf(sourceFile);
+        return lane == null || lane.isSettled();
+    }
+
+    private @Nullable Lane laneOf(SourceFile sourceFile) {
+        if (sourceFile instanceof K.CompilationUnit) {
+            return kotlin;
+        } else if (sourceFile instanceof J.CompilationUnit) {
+            return java;
+        } else if (sourceFile instanceof Xml.Document) {
+            return xml;
+        }
+        return null;
+    }
+
+    /**
+     * Wait for every source sampled so far, and build the styles detected from them.
+     *
+     * @return Adds the detected style of its language to a source.
+     */
+    UnaryOperator<SourceFile> styles() {
+        if (stylesByType == null) {
+            Map<Class<? extends SourceFile>, NamedStyles> styles = new HashMap<>();
+            styles.put(J.CompilationUnit.class, java.finish());
+            styles.put(K.CompilationUnit.class, kotlin.finish());
+            styles.put(Xml.Document.class, xml.finish());
+            stylesByType = styles;
+        }
+        Map<Class<? extends SourceFile>, NamedStyles> styles = stylesByType;
+        return before -> {
+            Markers markers = before.getMarkers();
+            for (Map.Entry<Class<? extends SourceFile>, NamedStyles> styleTypeEntry : styles.entrySet()) {
+                if (styleTypeEntry.getKey().isAssignableFrom(before.getClass()) && !hasMarker(markers, styleTypeEntry.getValue())) {
+                    markers = markers.add(styleTypeEntry.getValue());
+                }
+            }
+            return markers == before.getMarkers() ? before : before.withMarkers(markers);
+        };
+    }
+
+    /**
+     * @return A source set adding the detected styles to each of its sources only as a recipe visits it. A source
+     * which the recipe leaves unchanged is kept as it was parsed, so that adding the styles is never itself a change.
+     */
+    LargeSourceSet applyLazily(LargeSourceSet sourceSet) {
+        return new LazilyStyledSourceSet(sourceSet, styles());
+    }
+
+    /**
+     * Like {@link #applyLazily(LargeSourceSet)}, for a source set whose sources are all {@link #isSettled(SourceFile)
+     * settled}, while sources of other languages may still be sampled.
+     */
+    LargeSourceSet applySettledLazily(LargeSourceSet sourceSet) {
+        return new LazilyStyledSourceSet(sourceSet, before -> {
+            Lane lane = laneOf(before);
+            if (lane == null) {
+                return before;
+            }
+            NamedStyles style = lane.finish();
+            return hasMarker(before.getMarkers(), style) ? before : before.withMarkers(before.getMarkers().add(style));
+        });
+    }
+
+    /**
+     * Like {@link #applySettledLazily(LargeSourceSet)}, for sources whose style may not have settled yet, which are
+     * given the style detected from the sources sampled so far, while sampling carries on.
+     */
+    LargeSourceSet applyDetectedSoFarLazily(LargeSourceSet sourceSet) {
+        Map<Lane, NamedStyles> detected = new IdentityHashMap<>();
+        return new LazilyStyledSourceSet(sourceSet, before -> {
+            Lane lane = laneOf(before);
+            if (lane == null) {
+                return before;
+            }
+            NamedStyles style = detected.computeIfAbsent(lane, Lane::detectedSoFar);
+            return hasMarker(before.getMarkers(), style) ? before : before.withMarkers(before.getMarkers().add(style));
+        });
+    }
+
+    @Override
+    public void close() {
+        java.close();
+        kotlin.close();
+        xml.close();
+    }
+
+    private static boolean hasMarker(Markers markers, Marker marker) {
+        for (Marker m : markers.getMarkers()) {
+            if (m.getId().equals(marker.getId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class LaneSettings {
+        private final boolean parallel;
+        private final int maxSamples;
+        private final Path baseDir;
+        private final String cacheSalt;
+
+        @Nullable
+        private final Path cacheDirectory;
+
+        private LaneSettings(RewriteExtension extension, Path baseDir, @Nullable Path cacheDirectory) {
+            this.parallel = extension.getParallelism() > 1;
+            this.maxSamples = extension.getAutodetectMaxSamples() <= 0 ? Integer.MAX_VALUE : extension.getAutodetectMaxSamples();
+            this.baseDir = baseDir;
+            this.cacheDirectory = cacheDirectory;
+            this.cacheSalt = extension.getRewriteVersion() + '|' + maxSamples + '|' + STABILITY_INTERVAL;
+        }
+    }
+
+    /**
+     * Feeds one detector, which isn't safe to use from several threads, in batches on a single thread of its own.
+     * Everything but the sampling itself happens on the thread consuming the parse.
+     */
+    private static class Lane implements AutoCloseable {
+        private final String language;
+        private final Consumer<SourceFile> detector;
+        private final Supplier<NamedStyles> build;
+        private final LaneSettings settings;
+
+        @Nullable
+        private final WorkerPool pool;
+
+        private final Semaphore pendingBatches = new Semaphore(MAX_PENDING_BATCHES);
+        private final List<Future<?>> submitted = new ArrayList<>();
+        private List<SourceFile> batch = new ArrayList<>(BATCH_SIZE);
+
+        /**
+         * The size and modification time of each source received, in the order received, up to the sampling limit.
+         */
+        private final List<String> received = new ArrayList<>();
+
+        /**
+         * Styles kept by an earlier run, until the sources they were detected from have been received and checked.
+         */
+        @Nullable
+        private CachedStyles cached;
+
+        @Nullable
+        private List<SourceFile> held;
+
+        @Nullable
+        private NamedStyles styles;
+
+        // Only used by the thread sampling, or once it has finished
+        private int sampled;
+
+        @Nullable
+        private NamedStyles lastBuilt;
+
+        private volatile boolean stable;
+
+        private Lane(String language, Consumer<SourceFile> detector, Supplier<NamedStyles> build, LaneSettings settings) {
+            this.language = language;
+            this.detector = detector;
+            this.build = build;
+            this.settings = settings;
+            this.pool = settings.parallel ? new WorkerPool("rewrite-autodetect-" + language, 1) : null;
+            this.cached = readCache();
+            this.held = cached == null ? null : new ArrayList<>(cached.samples);
+        }
+
+        private void sample(SourceFile sourceFile) {
+            if (styles != null || stable || received.size() >= settings.maxSamples) {
+                return;
+            }
+            received.add(stamp(sourceFile));
+            if (cached != null && held != null) {
+                held.add(sourceFile);
+                if (held.size() == cached.samples) {
+                    if (cached.hash.equals(hash(received))) {
+                        logger.info("Reusing the {} style detected from the same {} sources in an earlier run", language, cached.samples);
+                        styles = cached.styles;
+                    } else {
+                        held.forEach(this::enqueue);
+                    }
+                    cached = null;
+                    held = null;
+                }
+                return;
+            }
+            enqueue(sourceFile);
+        }
+
+        private boolean isSettled() {
+            return styles != null || held == null && (stable || received.size() >= settings.maxSamples);
+        }
+
+        private void enqueue(SourceFile sourceFile) {
+            if (pool == null) {
+                detect(sourceFile);
+                return;
+            }
+            batch.add(sourceFile);
+            if (batch.size() >= BATCH_SIZE) {
+                submitBatch();
+            }
+        }
+
+        private void detect(SourceFile sourceFile) {
+            if (stable) {
+                return;
+            }
+            detector.accept(sourceFile);
+            // Stopping early is part of sampling, so only done once a sampling limit is set
+            if (++sampled % STABILITY_INTERVAL == 0 && settings.maxSamples != Integer.MAX_VALUE) {
+                NamedStyles built = build.get();
+                if (lastBuilt != null && new ArrayList<>(lastBuilt.getStyles()).equals(new ArrayList<>(built.getStyles()))) {
+                    logger.info("The {} style stopped changing after sampling {} sources", language, sampled);
+                    stable = true;
+                }
+                lastBuilt = built;
+            }
+        }
+
+        private void submitBatch() {
+            assert pool != null;
+            List<SourceFile> sources = batch;
+            batch = new ArrayList<>(BATCH_SIZE);
+            try {
+                pendingBatches.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting to detect styles", e);
+            }
+            submitted.add(pool.submit(() -> {
+                try {
+                    for (SourceFile sourceFile : sources) {
+                        detect(sourceFile);
+                    }
+                    return null;
+                } finally {
+                    pendingBatches.release();
+                }
+            }));
+        }
+
+        private NamedStyles finish() {
+            if (styles != null) {
+                return styles;
+            }
+            if (held != null) {
+                // Fewer sources than the earlier run's styles were detected from
+                held.forEach(this::enqueue);
+                held = null;
+                cached = null;
+            }
+            if (pool != null) {
+                if (!batch.isEmpty()) {
+                    submitBatch();
+                }
+                awaitSubmitted();
+            }
+            styles = build.get();
+            // Only once sampling stopped short of the last source do the sources sampled decide the style by themselves
+            if (stable || sampled >= settings.maxSamples) {
+                writeCache(new CachedStyles(sampled, hash(received.subList(0, sampled)), styles));
+            }
+            return styles;
+        }
+
+        /**
+         * @return The style of the sources sampled so far, which is the final style once settled.
+         */
+        private NamedStyles detectedSoFar() {
+            if (isSettled()) {
+                return finish();
+            }
+            if (held != null) {
+                // Too many sources are waiting on the check of the earlier run's styles to keep holding them back
+                held.forEach(this::enqueue);
+                held = null;
+                cached = null;
+            }
+            if (pool != null) {
+                if (!batch.isEmpty()) {
+                    submitBatch();
+                }
+                awaitSubmitted();
+            }
+            return build.get();
+        }
+
+        private void awaitSubmitted() {
+            try {
+                for (Future<?> future : submitted) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting to detect styles", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new RuntimeException(cause);
+            } finally {
+                submitted.clear();
+            }
+        }
+
+        private String stamp(SourceFile sourceFile) {
+            File file = settings.baseDir.resolve(sourceFile.getSourcePath()).toFile();
+            return sourceFile.getSourcePath() + "|" + file.length() + "|" + file.lastModified();
+        }
+
+        private String hash(List<String> stamps) {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                digest.update(settings.cacheSalt.getBytes(StandardCharsets.UTF_8));
+                for (String stamp : stamps) {
+                    digest.update((byte) '\n');
+                    digest.update(stamp.getBytes(StandardCharsets.UTF_8));
+                }
+                return Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest());
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private @Nullable CachedStyles readCache() {
+            if (settings.cacheDirectory == null) {
+                return null;
+            }
+            Path file = settings.cacheDirectory.resolve(language + ".json");
+            if (!Files.exists(file)) {
+                return null;
+            }
+            try {
+                JsonNode cache = MAPPER.readTree(file.toFile());
+                int samples = cache.path("samples").asInt();
+                if (samples <= 0 || samples > settings.maxSamples) {
+                    return null;
+                }
+                return new CachedStyles(samples, cache.path("hash").asText(), STYLES_READER.readValue(cache.path("styles")));
+            } catch (IOException | RuntimeException e) {
+                // Detected again, and overwritten
+                logger.debug("Unable to read the detected {} style from {}", language, file, e);
+                return null;
+            }
+        }
+
+        private void writeCache(CachedStyles cache) {
+            if (settings.cacheDirectory == null) {
+                return;
+            }
+            Path file = settings.cacheDirectory.resolve(language + ".json");
+            Path temp = settings.cacheDirectory.resolve(language + ".json." + Thread.currentThread().getId() + ".tmp");
+            try {
+                ObjectNode node = MAPPER.createObjectNode()
+                        .put("samples", cache.samples)
+                        .put("hash", cache.hash);
+                node.set("styles", MAPPER.readTree(STYLES_WRITER.writeValueAsBytes(cache.styles)));
+                Files.createDirectories(settings.cacheDirectory);
+                MAPPER.writeValue(temp.toFile(), node);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException | RuntimeException e) {
+                // Detected again next time
+                logger.debug("Unable to keep the detected {} style in {}", language, file, e);
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            if (pool != null) {
+                pool.close();
+            }
+        }
+    }
+
+    private static class CachedStyles {
+        private final int samples;
+        private final String hash;
+        private final NamedStyles styles;
+
+        private CachedStyles(int samples, String hash, NamedStyles styles) {
+            this.samples = samples;
+            this.hash = hash;
+            this.styles = styles;
+        }
+    }
+
+    /**
+     * Adds the styles to a source as it is edited, and otherwise behaves exactly like the source set it wraps.
+     */
+    private static class LazilyStyledSourceSet implements LargeSourceSet {
+        private final LargeSourceSet delegate;
+        private final UnaryOperator<SourceFile> styles;
+
+        private LazilyStyledSourceSet(LargeSourceSet delegate, UnaryOperator<SourceFile> styles) {
+            this.delegate = delegate;
+            this.styles = styles;
+        }
+
+        @Override
+        public void setRecipe(List<Recipe> recipeStack) {
+            delegate.setRecipe(recipeStack);
+        }
+
+        @Override
+        public LargeSourceSet editAll(UnaryOperator<SourceFile> map) {
+            LargeSourceSet edited = delegate.editAll(before -> {
+                SourceFile styled = styles.apply(before);
+                SourceFile after = map.apply(styled);
+                return after == styled ? before : after;
+            });
+            return edited == delegate ? this : new LazilyStyledSourceSet(edited, styles);
+        }
+
+        @Override
+        public void beforeCycle(boolean definitelyLastCycle) {
+            delegate.beforeCycle(definitelyLastCycle);
+        }
+
+        @Override
+        public void afterCycle(boolean lastCycle) {
+            delegate.afterCycle(lastCycle);
+        }
+
+        @Override
+        public LargeSourceSet generate(@Nullable Collection<? extends SourceFile> t) {
+            LargeSourceSet generated = delegate.generate(t);
+            return generated == delegate ? this : new LazilyStyledSourceSet(generated, styles);
+        }
+
+        @Override
+        public Changeset getChangeset() {
+            return delegate.getChangeset();
+        }
+
+        /**
+         * The source as it was parsed, without the styles, as a source which is never changed is never given them.
+         */
+        @Override
+        public @Nullable SourceFile getBefore(Path sourcePath) {
+            return delegate.getBefore(sourcePath);
+        }
+    }
+}
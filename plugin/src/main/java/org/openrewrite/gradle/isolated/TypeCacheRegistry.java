@@ -0,0 +1,174 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.gradle.isolated;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.java.internal.JavaTypeCache;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out the {@link JavaTypeCache} for a source set and its classpath, so that the Java, Kotlin and Groovy parsers
+ * of a source set, and the same source set in later builds kept warm in the daemon, attribute the JDK and library types
+ * on its classpath only once.
+ * <p>
+ * Caches are never shared between source sets. A cache also holds the types declared by the sources it attributed,
+ * and two source sets may each declare a different class with the same fully qualified name. Nor are they shared
+ * between classpaths, as a type attributed against one classpath may be missing members, or be unresolvable
+ * altogether, on a classpath which merely overlaps with it.
+ * <p>
+ * Once the caches together hold more than the configured number of entries, the least recently handed out caches
+ * are dropped from the registry, along with the idle parsers the {@link ParserPool} keeps for them. This is checked
+ * as caches are handed out and as they grow. Parsers still using a dropped cache keep it until they are done with it,
+ * and a cache is never dropped while it grows, so one source set alone may exceed the limit.
+ */
+final class TypeCacheRegistry {
+    private static final Logger logger = Logging.getLogger(TypeCacheRegistry.class);
+
+    /**
+     * How many types a cache takes in between checks of the size of all caches together.
+     */
+    private static final int TRIM_INTERVAL = 10_000;
+
+    private static final Map<List<Object>, CountingTypeCache> CACHES = new LinkedHashMap<>(16, 0.75f, true);
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static int reused;
+    private static int maxEntries = Integer.MAX_VALUE;
+
+    private TypeCacheRegistry() {
+    }
+
+    /**
+     * @param sourceSet Identifies the source set, such as by its project's path and its name.
+     */
+    static synchronized JavaTypeCache forSourceSet(String sourceSet, Collection<Path> classpath, int maxEntries) {
+        TypeCacheRegistry.maxEntries = maxEntries;
+        List<Object> key = key(sourceSet, classpath);
+        CountingTypeCache typeCache = CACHES.get(key);
+        if (typeCache != null) {
+            reused++;
+            return typeCache;
+        }
+        typeCache = new CountingTypeCache();
+        CACHES.put(key, typeCache);
+        trim(typeCache);
+        return typeCache;
+    }
+
+    /**
+     * Drop the least recently handed out caches, other than {@code keep}, until all caches together hold no more than
+     * the configured number of entries.
+     */
+    private static synchronized void trim(CountingTypeCache keep) {
+        long entries = 0;
+        for (CountingTypeCache cache : CACHES.values()) {
+            entries += cache.size();
+        }
+        Iterator<CountingTypeCache> eldest = CACHES.values().iterator();
+        while (entries > maxEntries && eldest.hasNext()) {
+            CountingTypeCache evicted = eldest.next();
+            if (evicted == keep) {
+                continue;
+            }
+            entries -= evicted.size();
+            eldest.remove();
+            ParserPool.evict(parserKey -> parserKey.contains(evicted));
+        }
+    }
+
+    static synchronized void logStatistics() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        if (hitCount + missCount > 0) {
+            logger.info("Type caches were reused {} times: {} hits, {} misses ({}% hit rate)",
+                    reused, hitCount, missCount, hitCount * 100 / (hitCount + missCount));
+        }
+    }
+
+    static synchronized void evict(String sourceSet, Collection<Path> classpath) {
+        CountingTypeCache evicted = CACHES.remove(key(sourceSet, classpath));
+        if (evicted != null) {
+            ParserPool.evict(parserKey -> parserKey.contains(evicted));
+        }
+    }
+
+    /**
+     * Start counting hits and misses afresh, for caches which are kept from one build to the next.
+     */
+    static synchronized void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+        reused = 0;
+    }
+
+    static synchronized void clear() {
+        CACHES.clear();
+        hits.set(0);
+        misses.set(0);
+        reused = 0;
+    }
+
+    private static List<Object> key(String sourceSet, Collection<Path> classpath) {
+        return Arrays.asList(sourceSet, new HashSet<>(classpath));
+    }
+
+    /**
+     * Parsers for different languages may use the same cache from different threads,
+     * and the cache itself is not thread-safe.
+     */
+    private static class CountingTypeCache extends JavaTypeCache {
+        private int puts;
+
+        @Override
+        public synchronized <T> @Nullable T get(String signature) {
+            T type = super.get(signature);
+            if (type == null) {
+                misses.incrementAndGet();
+            } else {
+                hits.incrementAndGet();
+            }
+            return type;
+        }
+
+        @Override
+        public void put(String signature, Object o) {
+            boolean check;
+            synchronized (this) {
+                super.put(signature, o);
+                check = ++puts % TRIM_INTERVAL == 0;
+            }
+            // Outside of this cache's lock, as trimming takes the registry's lock and then that of every cache
+            if (check) {
+                trim(this);
+            }
+        }
+
+        @Override
+        public synchronized int size() {
+            return super.size();
+        }
+
+        @Override
+        public synchronized void clear() {
+            super.clear();
+        }
+    }
+}
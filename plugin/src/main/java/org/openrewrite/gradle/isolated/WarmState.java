@@ -0,0 +1,167 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.gradle.isolated;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.marker.GitProvenance;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * What {@link org.openrewrite.gradle.RewriteExtension#isWarmDaemon()} keeps alive in the Gradle daemon between builds,
+ * beyond the recipes held by the {@link EnvironmentCache} and the parsers and type caches held by the
+ * {@link ParserPool} and the {@link TypeCacheRegistry}.
+ * <p>
+ * Everything kept is checked against the state of the repository when it is next used, rather than trusted:
+ * the git provenance of a repository is only reused while its HEAD hasn't moved, and the parsers and type cache
+ * of a source set are dropped the first time a build finds that any entry on its classpath, or any of its own
+ * sources, has changed.
+ */
+final class WarmState {
+    private static final Logger logger = Logging.getLogger(WarmState.class);
+
+    private static final Map<Path, Provenance> PROVENANCE = new HashMap<>();
+    private static final Map<List<Object>, String> SOURCE_SET_STAMPS = new HashMap<>();
+    private static final Set<List<Object>> CHECKED_SOURCE_SETS = new HashSet<>();
+    private static WeakReference<Object> checkedForBuild = new WeakReference<>(null);
+    private static WeakReference<Object> invalidatedForBuild = new WeakReference<>(null);
+
+    private WarmState() {
+    }
+
+    /**
+     * Discard everything kept in the daemon, at most once per build however many rewrite tasks request it.
+     */
+    static synchronized void invalidate(Object build) {
+        if (invalidatedForBuild.get() != build) {
+            invalidatedForBuild = new WeakReference<>(build);
+            logger.lifecycle("Discarding the rewrite state kept in this daemon");
+            EnvironmentCache.clear();
+            clear();
+        }
+    }
+
+    /**
+     * Release what is only worth keeping between builds. The {@link EnvironmentCache} is left to be reused by the
+     * remaining rewrite tasks of this build.
+     */
+    static void clear() {
+        synchronized (WarmState.class) {
+            PROVENANCE.clear();
+            SOURCE_SET_STAMPS.clear();
+            CHECKED_SOURCE_SETS.clear();
+            checkedForBuild = new WeakReference<>(null);
+        }
+        TypeCacheRegistry.clear();
+        ParserPool.clear();
+    }
+
+    static @Nullable GitProvenance gitProvenance(Path repositoryRoot, Supplier<@Nullable GitProvenance> compute) {
+        String head = headStamp(repositoryRoot);
+        synchronized (WarmState.class) {
+            Provenance kept = PROVENANCE.get(repositoryRoot);
+            if (kept != null && head != null && head.equals(kept.head)) {
+                return kept.provenance;
+            }
+        }
+        GitProvenance provenance = compute.get();
+        if (head != null) {
+            synchronized (WarmState.class) {
+                PROVENANCE.put(repositoryRoot, new Provenance(head, provenance));
+            }
+        }
+        return provenance;
+    }
+
+    /**
+     * Drop the parsers and type cache kept for this classpath if any entry on it has changed since they were built,
+     * such as a project's own classes having been recompiled, or if any source of the source set has. The type cache
+     * also holds the types declared by those sources, which aren't on the source set's own classpath. Each source set
+     * is checked once per build.
+     *
+     * @param sourceSet Identifies the source set, such as by its project's path and its name.
+     * @param sources   The source set's own sources.
+     */
+    static void dropIfChanged(Object build, String sourceSet, Collection<Path> classpath, Collection<Path> sources) {
+        Set<Path> classpathKey = new HashSet<>(classpath);
+        List<Object> key = Arrays.asList(sourceSet, classpathKey);
+        synchronized (WarmState.class) {
+            if (checkedForBuild.get() != build) {
+                checkedForBuild = new WeakReference<>(build);
+                CHECKED_SOURCE_SETS.clear();
+            }
+            if (!CHECKED_SOURCE_SETS.add(key)) {
+                return;
+            }
+        }
+        String stamp = LstCache.describeClasspath(classpathKey) + '\n' + LstCache.describeClasspath(new HashSet<>(sources));
+        String previous;
+        synchronized (WarmState.class) {
+            previous = SOURCE_SET_STAMPS.put(key, stamp);
+        }
+        if (previous != null && !previous.equals(stamp)) {
+            logger.info("Dropping parsers and types kept for source set {}, which has changed since the last build", sourceSet);
+            TypeCacheRegistry.evict(sourceSet, classpathKey);
+        }
+    }
+
+    /**
+     * HEAD, along with the commit of the branch it points to, or {@code null} when that can't be determined and the
+     * provenance should be computed afresh.
+     */
+    private static @Nullable String headStamp(Path repositoryRoot) {
+        Path git = repositoryRoot.resolve(".git");
+        try {
+            if (!Files.isDirectory(git)) {
+                // A worktree or submodule, whose .git file points elsewhere
+                return null;
+            }
+            String head = new String(Files.readAllBytes(git.resolve("HEAD")), StandardCharsets.UTF_8).trim();
+            if (!head.startsWith("ref: ")) {
+                return head;
+            }
+            Path ref = git.resolve(head.substring("ref: ".length()));
+            if (Files.exists(ref)) {
+                return head + '|' + new String(Files.readAllBytes(ref), StandardCharsets.UTF_8).trim();
+            }
+            Path packedRefs = git.resolve("packed-refs");
+            return head + '|' + (Files.exists(packedRefs) ? Files.getLastModifiedTime(packedRefs).toMillis() : 0);
+        } catch (IOException e) {
+            logger.debug("Unable to read the HEAD of {}", repositoryRoot, e);
+            return null;
+        }
+    }
+
+    private static class Provenance {
+        private final String head;
+
+        @Nullable
+        private final GitProvenance provenance;
+
+        private Provenance(String head, @Nullable GitProvenance provenance) {
+            this.head = head;
+            this.provenance = provenance;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.gradle.isolated;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A fixed-size pool of daemon threads for the parts of a rewrite run which can be spread across cores.
+ * Results are always returned in the order their tasks were submitted, so running work in parallel never
+ * changes the order in which source files or results are reported.
+ */
+class WorkerPool implements AutoCloseable {
+    private static final Object END_OF_STREAM = new Object();
+
+    private final String name;
+    private final ExecutorService executor;
+
+    WorkerPool(String name, int parallelism) {
+        this.name = name;
+        ClassLoader classLoader = WorkerPool.class.getClassLoader();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, parallelism), runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            // Parsers and recipes resolve resources through the context class loader, which must be the isolated one
+            thread.setContextClassLoader(classLoader);
+            return thread;
+        });
+    }
+
+    <T> List<T> invokeAll(List<? extends Callable<T>> tasks) {
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) {
+            futures.add(executor.submit(task));
+        }
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel(futures);
+            throw new RuntimeException("Interrupted while waiting for " + name + " workers", e);
+        } catch (ExecutionException e) {
+            cancel(futures);
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+        return results;
+    }
+
+    /**
+     * Run a task which is waited for separately, rather than as part of a batch with {@link #invokeAll(List)}.
+     */
+    <T> Future<T> submit(Callable<T> task) {
+        return executor.submit(task);
+    }
+
+    /**
+     * Concatenate {@code streams}, consuming up to {@code parallelism} of them at once on a pool of its own. Each stream
+     * hands its elements over through a queue holding at most {@code capacity} of them, so a stream's workers wait for
+     * the consumer rather than running ahead of it, and no more than {@code parallelism * capacity} elements are held
+     * at once. Elements come out in the same order as a sequential concatenation.
+     * <p>
+     * The returned stream must be closed, which stops any worker still consuming or waiting to hand over an element,
+     * even when it isn't consumed to the end.
+     */
+    static <T> Stream<T> concatInOrder(String name, int parallelism, List<Stream<T>> streams, int capacity) {
+        WorkerPool pool = new WorkerPool(name, parallelism);
+        List<BlockingQueue<Object>> handoffs = new ArrayList<>(streams.size());
+        for (Stream<T> stream : streams) {
+            BlockingQueue<Object> handoff = new ArrayBlockingQueue<>(capacity);
+            handoffs.add(handoff);
+            // Tasks start in submission order, so the stream being consumed always has a worker
+            pool.submit(() -> {
+                // Stops as soon as the pool is closed, as then nothing takes from the handoff anymore
+                try (Stream<T> elements = stream) {
+                    Iterator<T> iterator = elements.iterator();
+                    while (!Thread.currentThread().isInterrupted() && iterator.hasNext()) {
+                        handoff.put(iterator.next());
+                    }
+                    handoff.put(END_OF_STREAM);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Throwable t) {
+                    if (!Thread.currentThread().isInterrupted()) {
+                        handoff.put(new Failure(t));
+                    }
+                }
+                return null;
+            });
+        }
+        Iterator<T> inOrder = new Iterator<T>() {
+            private int current;
+            private T next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null) {
+                    if (current == handoffs.size()) {
+                        pool.close();
+                        return false;
+                    }
+                    Object handedOff;
+                    try {
+                        handedOff = handoffs.get(current).take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        pool.close();
+                        throw new RuntimeException("Interrupted while waiting for " + name + " workers", e);
+                    }
+                    if (handedOff == END_OF_STREAM) {
+                        current++;
+                    } else if (handedOff instanceof Failure) {
+                        pool.close();
+                        Throwable cause = ((Failure) handedOff).cause;
+                        if (cause instanceof RuntimeException) {
+                            throw (RuntimeException) cause;
+                        } else if (cause instanceof Error) {
+                            throw (Error) cause;
+                        }
+                        throw new RuntimeException(cause);
+                    } else {
+                        //noinspection unchecked
+                        next = (T) handedOff;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                T element = next;
+                next = null;
+                return element;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(inOrder, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(pool::close);
+    }
+
+    private static void cancel(List<? extends Future<?>> futures) {
+        for (Future<?> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private static class Failure {
+        private final Throwable cause;
+
+        Failure(Throwable cause) {
+            this.cause = cause;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.gradle
+
+import org.assertj.core.api.Assertions.assertThat
+import org.gradle.testfixtures.ProjectBuilder
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+
+class ResolvedDependencyCacheTest {
+
+    @TempDir
+    lateinit var dir: File
+
+    private val dependencies = ProjectBuilder.builder().build().dependencies
+
+    @Test
+    fun `files remembered for the same dependencies are read back`() {
+        val key = ResolvedDependencyCache.key(listOf(dependencies.create("org.openrewrite:rewrite-java:8.1.0")), "8.5")!!
+        assertThat(ResolvedDependencyCache.key(listOf(dependencies.create("org.openrewrite:rewrite-java:8.1.0")), "8.5"))
+            .isEqualTo(key)
+
+        val jar = File(dir, "rewrite-java-8.1.0.jar").apply { writeText("") }
+        val cache = ResolvedDependencyCache(dir.toPath().resolve("cache"))
+        cache.write(key, setOf(jar))
+
+        assertThat(cache.read(key)).containsExactly(jar)
+    }
+
+    @Test
+    fun `nothing is read back for other dependencies or another Gradle version`() {
+        val key = ResolvedDependencyCache.key(listOf(dependencies.create("org.openrewrite:rewrite-java:8.1.0")), "8.5")!!
+        val cache = ResolvedDependencyCache(dir.toPath().resolve("cache"))
+        cache.write(key, setOf(File(dir, "rewrite-java-8.1.0.jar").apply { writeText("") }))
+
+        val otherVersion = ResolvedDependencyCache.key(listOf(dependencies.create("org.openrewrite:rewrite-java:8.2.0")), "8.5")!!
+        val otherGradle = ResolvedDependencyCache.key(listOf(dependencies.create("org.openrewrite:rewrite-java:8.1.0")), "8.6")!!
+        assertThat(cache.read(otherVersion)).isNull()
+        assertThat(cache.read(otherGradle)).isNull()
+        assertThat(ResolvedDependencyCache.key(listOf(dependencies.create("org.openrewrite:rewrite-java:latest.release")), "8.5"))
+            .isNull()
+    }
+
+    @Test
+    fun `nothing is read back once a remembered file is deleted`() {
+        val key = ResolvedDependencyCache.key(listOf(dependencies.create("org.openrewrite:rewrite-java:8.1.0")), "8.5")!!
+        val jar = File(dir, "rewrite-java-8.1.0.jar").apply { writeText("") }
+        val cache = ResolvedDependencyCache(dir.toPath().resolve("cache"))
+        cache.write(key, setOf(jar))
+
+        assertThat(jar.delete()).isTrue
+        assertThat(cache.read(key)).isNull()
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.gradle
+
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import org.openrewrite.Recipe
+import java.io.File
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.jar.JarFile
+
+class RewriteClassLoaderTest {
+
+    @Test
+    fun `classes loaded by several threads at once are defined once`() {
+        val jar = File(Recipe::class.java.protectionDomain.codeSource.location.toURI())
+        val classNames = JarFile(jar).use { jarFile ->
+            jarFile.entries().asSequence()
+                .map { it.name }
+                .filter { it.startsWith("org/openrewrite/") && it.endsWith(".class") && !it.contains("package-info") }
+                .map { it.removeSuffix(".class").replace('/', '.') }
+                .filter { !it.startsWith("org.openrewrite.gradle") }
+                .take(200)
+                .toList()
+        }
+        assertThat(classNames).isNotEmpty
+
+        RewriteClassLoader(listOf(jar.toURI().toURL())).use { classLoader ->
+            val threads = 8
+            val start = CountDownLatch(1)
+            val executor = Executors.newFixedThreadPool(threads)
+            try {
+                val loaded = (1..threads).map {
+                    executor.submit<List<Class<*>>> {
+                        start.await()
+                        classNames.map { Class.forName(it, false, classLoader) }
+                    }
+                }
+                start.countDown()
+                val classes = loaded.map { it.get(1, TimeUnit.MINUTES) }
+
+                for (thread in classes) {
+                    assertThat(thread).containsExactlyElementsOf(classes[0])
+                }
+                assertThat(classes[0].map { it.classLoader }).containsOnly(classLoader)
+            } finally {
+                executor.shutdownNow()
+            }
+        }
+    }
+}
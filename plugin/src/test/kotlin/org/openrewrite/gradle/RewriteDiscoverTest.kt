@@ -65,4 +65,33 @@ class RewriteDiscoverTest : RewritePluginTest {
 
         assertThat(result.output).contains("Configured with 2 active recipes and 1 active styles.")
     }
+
+    @Test
+    fun `rewriteDiscover reads recipes from the catalog once it is built`(
+        @TempDir projectDir: File
+    ) {
+        gradleProject(projectDir) {
+            buildGradle("""
+                plugins {
+                    id("java")
+                    id("org.openrewrite.rewrite")
+                }
+
+                repositories {
+                    mavenCentral()
+                }
+
+                rewrite {
+                     activeRecipe("org.openrewrite.java.format.AutoFormat")
+                }
+            """)
+        }
+        val firstResult = runGradle(projectDir, taskName())
+        assertThat(firstResult.task(":${taskName()}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+
+        val secondResult = runGradle(projectDir, taskName(), "--info")
+        assertThat(secondResult.task(":${taskName()}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+        assertThat(secondResult.output).contains("Read the recipe catalog from")
+        assertThat(secondResult.output).contains("org.openrewrite.java.format.AutoFormat")
+    }
 }
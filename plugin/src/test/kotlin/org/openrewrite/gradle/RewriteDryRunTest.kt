@@ -92,6 +92,666 @@ class RewriteDryRunTest : RewritePluginTest {
         assertThat(File(projectDir, "build/reports/rewrite/rewrite.patch").exists()).isTrue
     }
 
+    @Test
+    fun `rewriteDryRun generates no report once there are no changes`() {
+        gradleProject(projectDir) {
+            buildGradle(
+                """
+                plugins {
+                    id("java")
+                    id("org.openrewrite.rewrite")
+                }
+
+                repositories {
+                    mavenCentral()
+                }
+
+                rewrite {
+                    activeRecipe("org.openrewrite.java.format.AutoFormat")
+                }
+            """
+            )
+            sourceSet("main") {
+                java(
+                    """
+                    package org.openrewrite.before;
+
+                    public class HelloWorld { public static void sayHello() { } }
+                """
+                )
+            }
+        }
+        val report = File(projectDir, "build/reports/rewrite/rewrite.patch")
+
+        assertThat(runGradle(projectDir, taskName()).task(":${taskName()}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+        val earlierReport = report.readText()
+        assertThat(earlierReport).isNotEmpty()
+
+        assertThat(runGradle(projectDir, "rewriteRun").task(":rewriteRun")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+
+        val result = runGradle(projectDir, taskName())
+        assertThat(result.task(":${taskName()}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+        assertThat(result.output).contains("Applying recipes would make no changes. No report generated.")
+        // As before the patch was written as the diffs are computed, no report is written, nor is an earlier one removed
+        assertThat(report.readText()).isEqualTo(earlierReport)
+    }
+
+    @Test
+    fun `rewriteDryRun does not report results which only change whitespace within lines`() {
+        gradleProject(projectDir) {
+            rewriteYaml(
+                """
+                type: specs.openrewrite.org/v1beta/recipe
+                name: org.openrewrite.CollapseSpaces
+                displayName: Collapse the spaces of greeting.txt
+                description: Changes only the whitespace within a line.
+                preconditions:
+                  - org.openrewrite.FindSourceFiles:
+                      filePattern: "**/greeting.txt"
+                recipeList:
+                  - org.openrewrite.text.ChangeText:
+                      toText: hello world
+            """
+            )
+            buildGradle(
+                """
+                plugins {
+                    id("org.openrewrite.rewrite")
+                }
+
+                repositories {
+                    mavenCentral()
+                }
+
+                rewrite {
+                    activeRecipe("org.openrewrite.CollapseSpaces")
+                }
+            """
+            )
+            textFile("greeting.txt", "hello  world")
+        }
+
+        val result = runGradle(projectDir, taskName())
+        assertThat(result.task(":${taskName()}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+        assertThat(result.output)
+            .doesNotContain("These recipes would make changes to")
+            .contains("Applying recipes would make no changes. No report generated.")
+        assertThat(File(projectDir, "build/reports/rewrite/rewrite.patch")).doesNotExist()
+    }
+
+    @Test
+    fun `rewriteDryRun reuses cached LSTs of unchanged sources`() {
+        gradleProject(projectDir) {
+            buildGradle(
+                """
+                plugins {
+                    id("java")
+                    id("org.openrewrite.rewrite")
+                }
+
+                repositories {
+                    mavenCentral()
+                }
+
+                rewrite {
+                    activeRecipe("org.openrewrite.java.format.AutoFormat")
+                    cacheParsedSources = true
+                }
+            """
+            )
+            sourceSet("main") {
+                java(
+                    """
+                    package org.openrewrite.before;
+
+                    public class HelloWorld { public static void sayHello() { } }
+                """
+                )
+            }
+        }
+        val firstResult = runGradle(projectDir, taskName())
+        assertThat(firstResult.task(":${taskName()}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+        assertThat(firstResult.output).contains("Reused 0 of")
+        val firstPatch = File(projectDir, "build/reports/rewrite/rewrite.patch").readText()
+
+        val secondResult = runGradle(projectDir, taskName())
+        assertThat(secondResult.task(":${taskName()}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+        assertThat(secondResult.output).containsPattern("Reused [1-9]\\d* of \\d+ sources from the LST cache")
+        assertThat(File(projectDir, "build/reports/rewrite/rewrite.patch").readText()).isEqualTo(firstPatch)
+    }
+
+    @Test
+    fun `rewriteDryRun removes cached LSTs of sources which have since changed`() {
+        gradleProject(projectDir) {
+            buildGradle(
+                """
+                plugins {
+                    id("java")
+                    id("org.openrewrite.rewrite")
+                }
+
+                repositories {
+                    mavenCentral()
+                }
+
+                rewrite {
+                    activeRecipe("org.openrewrite.java.format.AutoFormat")
+                    cacheParsedSources = true
+                }
+            """
+            )
+            sourceSet("main") {
+                java(
+                    """
+                    package org.openrewrite.before;
+
+                    public class HelloWorld { public static void sayHello() { } }
+                """
+                )
+            }
+        }
+        val cacheDirectory = File(projectDir, "build/rewrite/lst-cache")
+        fun cachedTrees() = cacheDirectory.walk().filter { it.isFile }.map { it.name }.toSet()
+
+        assertThat(runGradle(projectDir, taskName()).task(":${taskName()}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+        val firstTrees = cachedTrees()
+        assertThat(firstTrees).isNotEmpty
+
+        val helloWorld = File(projectDir, "src/main/java/org/openrewrite/before/HelloWorld.java")
+        helloWorld.writeText(helloWorld.readText().replace("sayHello", "sayGoodbye"))
+        assertThat(runGradle(projectDir, taskName()).task(":${taskName()}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+
+        val secondTrees = cachedTrees()
+        assertThat(secondTrees).hasSameSizeAs(firstTrees)
+        assertThat(secondTrees).isNotEqualTo(firstTrees)
+        assertThat(cacheDirectory.walk().filter { it.name.endsWith(".tmp") }.toList()).isEmpty()
+    }
+
+    @Test
+    fun `rewriteDryRun reports the same changes whether or not recipes run on sources as they are parsed`() {
+        gradleProject(projectDir) {
+            buildGradle(
+                """
+                plugins {
+                    id("java")
+                    id("org.openrewrite.rewrite")
+                }
+
+                repositories {
+                    mavenCentral()
+                }
+
+                rewrite {
+                    activeRecipe("org.openrewrite.java.format.AutoFormat")
+                    streamRecipeRun = project.hasProperty("stream")
+                }
+            """
+            )
+            sourceSet("main") {
+                // More sources than fit in a single batch of the streamed run
+                for (i in 1..200) {
+                    java(
+                        """
+                        package com.foo;
+
+                        public class A$i { public void a() { } }
+                    """
+                    )
+                }
+            }
+        }
+        val wholeResult = runGradle(projectDir, taskName())
+        assertThat(wholeResult.task(":${taskName()}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+        assertThat(wholeResult.output).doesNotContain("Running active recipes on sources as they are parsed")
+        val wholePatch = File(projectDir, "build/reports/rewrite/rewrite.patch").readText()
+
+        val streamedResult = runGradle(projectDir, taskName(), "-Pstream")
+        assertThat(streamedResult.task(":${taskName()}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+        assertThat(streamedResult.output).contains("Running active recipes on sources as they are parsed")
+        assertThat(File(projectDir, "build/reports/rewrite/rewrite.patch").readText()).isEqualTo(wholePatch)
+    }
+
+    @Test
+    fun `rewriteDryRun keeps its state in the daemon until invalidated`() {
+        gradleProject(projectDir) {
+            buildGradle(
+                """
+                plugins {
+                    id("java")
+                    id("org.openrewrite.rewrite")
+                }
+
+                repositories {
+                    mavenCentral()
+                }
+
+                rewrite {
+                    activeRecipe("org.openrewrite.java.format.AutoFormat")
+                    warmDaemon = true
+                }
+            """
+            )
+            sourceSet("main") {
+                java(
+                    """
+                    package org.openrewrite.before;
+
+                    public class HelloWorld { public static void sayHello() { } }
+                """
+                )
+            }
+        }
+        val firstResult = runGradle(projectDir, taskName())
+        assertThat(firstResult.task(":${taskName()}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+        val firstPatch = File(projectDir, "build/reports/rewrite/rewrite.patch").readText()
+
+        val warmResult = runGradle(projectDir, taskName())
+        assertThat(warmResult.task(":${taskName()}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+        assertThat(warmResult.output).doesNotContain("Discarding the rewrite state kept in this daemon")
+        assertThat(File(projectDir, "build/reports/rewrite/rewrite.patch").readText()).isEqualTo(firstPatch)
+
+        val invalidatedResult = runGradle(projectDir, taskName(), "-Prewrite.invalidateWarmDaemon")
+        assertThat(invalidatedResult.task(":${taskName()}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+        assertThat(invalidatedResult.output).contains("Discarding the rewrite state kept in this daemon")
+        assertThat(File(projectDir, "build/reports/rewrite/rewrite.patch").readText()).isEqualTo(firstPatch)
+    }
+
+    @Test
+    fun `rewriteDryRun attributes types of sources edited between warm builds afresh`() {
+        gradleProject(projectDir) {
+            rewriteYaml(
+                """
+                type: specs.openrewrite.org/v1beta/recipe
+                name: com.example.FindGreetings
+                displayName: Find greetings
+                recipeList:
+                  - org.openrewrite.java.search.FindImplementations:
+                      typeName: com.foo.Greeting
+            """
+            )
+            buildGradle(
+                """
+                plugins {
+                    id("java")
+                    id("org.openrewrite.rewrite")
+                }
+
+                repositories {
+                    mavenCentral()
+                }
+
+                rewrite {
+                    activeRecipe("com.example.FindGreetings")
+                    warmDaemon = true
+                }
+            """
+            )
+            sourceSet("main") {
+                java(
+                    """
+                    package com.foo;
+
+                    public interface Greeting { }
+                """
+                )
+                java(
+                    """
+                    package com.foo;
+
+                    public class Greeter { }
+                """
+                )
+            }
+        }
+        val firstResult = runGradle(projectDir, taskName())
+        assertThat(firstResult.task(":${taskName()}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+        assertThat(File(projectDir, "build/reports/rewrite/rewrite.patch")).doesNotExist()
+
+        //language=java
+        File(projectDir, "src/main/java/com/foo/Greeter.java").writeText(
+            """
+            package com.foo;
+
+            public class Greeter implements Greeting { }
+            """.trimIndent()
+        )
+        val warmResult = runGradle(projectDir, taskName())
+        assertThat(warmResult.task(":${taskName()}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+        assertThat(warmResult.output).doesNotContain("Discarding the rewrite state kept in this daemon")
+        assertThat(File(projectDir, "build/reports/rewrite/rewrite.patch").readText())
+            .contains("Greeter.java")
+            .contains("/*~~>*/")
+    }
+
+    @Test
+    fun `rewriteDryRun attributes the types of each module with its own sources`() {
+        gradleProject(projectDir) {
+            rewriteYaml(
+                """
+                type: specs.openrewrite.org/v1beta/recipe
+                name: com.example.FindSerializable
+                displayName: Find serializable classes
+                recipeList:
+                  - org.openrewrite.java.search.FindImplementations:
+                      typeName: java.io.Serializable
+            """
+            )
+            buildGradle(
+                """
+                plugins {
+                    id("org.openrewrite.rewrite")
+                }
+
+                subprojects {
+                    apply plugin: "java"
+
+                    repositories {
+                        mavenCentral()
+                    }
+                }
+
+                repositories {
+                    mavenCentral()
+                }
+
+                rewrite {
+                    activeRecipe("com.example.FindSerializable")
+                }
+            """
+            )
+            subproject("a") {
+                sourceSet("main") {
+                    java(
+                        """
+                        package com.foo;
+
+                        public class Util implements java.io.Serializable { }
+                    """
+                    )
+                }
+            }
+            subproject("b") {
+                sourceSet("main") {
+                    java(
+                        """
+                        package com.foo;
+
+                        public class Util { }
+                    """
+                    )
+                }
+            }
+        }
+        val result = runGradle(projectDir, taskName(), "--info")
+        assertThat(result.task(":${taskName()}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+        assertThat(result.output).containsPattern("Type caches were reused \\d+ times: [1-9]\\d* hits, [1-9]\\d* misses")
+
+        val patch = File(projectDir, "build/reports/rewrite/rewrite.patch").readText()
+        assertThat(patch).contains("a/src/main/java/com/foo/Util.java")
+        assertThat(patch).doesNotContain("b/src/main/java/com/foo/Util.java")
+    }
+
+    @Test
+    fun `rewriteDryRun reuses the rewrite classpath resolved by an earlier build when opted in`() {
+        gradleProject(projectDir) {
+            buildGradle(
+                """
+                plugins {
+                    id("java")
+                    id("org.openrewrite.rewrite")
+                }
+
+                repositories {
+                    mavenCentral()
+                }
+
+                rewrite {
+                    activeRecipe("org.openrewrite.java.format.AutoFormat")
+                    cacheResolvedDependencies = project.hasProperty("cacheResolved")
+                }
+            """
+            )
+        }
+        val uncached = runGradle(projectDir, taskName(), "--info")
+        assertThat(uncached.task(":${taskName()}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+        assertThat(uncached.output).doesNotContain("Using the rewrite classpath resolved by an earlier build")
+
+        runGradle(projectDir, taskName(), "-PcacheResolved")
+        val cached = runGradle(projectDir, taskName(), "-PcacheResolved", "--info")
+        assertThat(cached.task(":${taskName()}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+        assertThat(cached.output).contains("Using the rewrite classpath resolved by an earlier build")
+    }
+
+    @Test
+    fun `rewrite tasks in one build load recipes once`() {
+        gradleProject(projectDir) {
+            buildGradle(
+                """
+                plugins {
+                    id("java")
+                    id("org.openrewrite.rewrite")
+                }
+
+                repositories {
+                    mavenCentral()
+                }
+
+                rewrite {
+                    activeRecipe("org.openrewrite.java.format.AutoFormat")
+                }
+            """
+            )
+        }
+        val result = runGradle(projectDir, taskName(), "rewriteRun", "--info")
+        assertThat(result.task(":${taskName()}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+        assertThat(result.task(":rewriteRun")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+
+        assertThat(result.output).contains("Reusing the recipes loaded earlier from the same classpath and configuration")
+    }
+
+    @Test
+    fun `rewrite tasks of projects sharing a configuration load recipes once`() {
+        gradleProject(projectDir) {
+            rewriteYaml(
+                """
+                type: specs.openrewrite.org/v1beta/recipe
+                name: org.openrewrite.test.Greet
+                displayName: Greet
+                recipeList:
+                  - org.openrewrite.text.ChangeText:
+                      toText: ${'$'}{greeting:hello}
+            """
+            )
+            buildGradle(
+                """
+                plugins {
+                    id("org.openrewrite.rewrite")
+                }
+
+                allprojects {
+                    apply plugin: "org.openrewrite.rewrite"
+
+                    repositories {
+                        mavenCentral()
+                    }
+
+                    rewrite {
+                        configFile = rootProject.file("rewrite.yml")
+                        activeRecipe("org.openrewrite.test.Greet")
+                    }
+                }
+            """
+            )
+            subproject("a") {
+                textFile("greeting.txt", "bye")
+            }
+            subproject("b") {
+                textFile("greeting.txt", "bye")
+            }
+        }
+        val result = runGradle(projectDir, taskName(), "-Pgreeting=hi", "--info")
+        assertThat(result.task(":a:${taskName()}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+        assertThat(result.task(":b:${taskName()}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+
+        assertThat(result.output).contains("Reusing the recipes loaded earlier from the same classpath and configuration")
+        assertThat(File(projectDir, "a/build/reports/rewrite/rewrite.patch").readText()).contains("+hi")
+    }
+
+    @Test
+    fun `rewriteDryRun reuses the style detected from unchanged sources`() {
+        gradleProject(projectDir) {
+            buildGradle(
+                """
+                plugins {
+                    id("java")
+                    id("org.openrewrite.rewrite")
+                }
+
+                repositories {
+                    mavenCentral()
+                }
+
+                rewrite {
+                    activeRecipe("org.openrewrite.java.format.AutoFormat")
+                    autodetectMaxSamples = 1
+                    cacheDetectedStyles = true
+                }
+            """
+            )
+            sourceSet("main") {
+                java(
+                    """
+                    package org.openrewrite.before;
+
+                    public class HelloWorld { public static void sayHello() { } }
+                """
+                )
+            }
+        }
+        val firstResult = runGradle(projectDir, taskName())
+        assertThat(firstResult.task(":${taskName()}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+        assertThat(File(projectDir, "build/rewrite/styles/java.json")).exists()
+        val firstPatch = File(projectDir, "build/reports/rewrite/rewrite.patch").readText()
+
+        val secondResult = runGradle(projectDir, taskName())
+        assertThat(secondResult.task(":${taskName()}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+        assertThat(secondResult.output).contains("Reusing the java style detected from the same 1 sources in an earlier run")
+        assertThat(File(projectDir, "build/reports/rewrite/rewrite.patch").readText()).isEqualTo(firstPatch)
+    }
+
+    @Test
+    fun `rewriteDryRun keeps no detected styles unless opted in`() {
+        gradleProject(projectDir) {
+            buildGradle(
+                """
+                plugins {
+                    id("java")
+                    id("org.openrewrite.rewrite")
+                }
+
+                repositories {
+                    mavenCentral()
+                }
+
+                rewrite {
+                    activeRecipe("org.openrewrite.java.format.AutoFormat")
+                }
+            """
+            )
+            sourceSet("main") {
+                java(
+                    """
+                    package org.openrewrite.before;
+
+                    public class HelloWorld { public static void sayHello() { } }
+                """
+                )
+            }
+        }
+        val result = runGradle(projectDir, taskName())
+        assertThat(result.task(":${taskName()}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+        assertThat(File(projectDir, "build/rewrite/styles")).doesNotExist()
+    }
+
+    /**
+     * More tab indented sources than the detector of a language samples in a batch, and one indented with spaces
+     * whose imports are out of order.
+     */
+    private fun tabIndentedProject(activeRecipe: String) {
+        gradleProject(projectDir) {
+            buildGradle(
+                """
+                plugins {
+                    id("java")
+                    id("org.openrewrite.rewrite")
+                }
+
+                repositories {
+                    mavenCentral()
+                }
+
+                rewrite {
+                    activeRecipe("$activeRecipe")
+                    parallelism = project.hasProperty("parallel") ? 4 : 1
+                }
+            """
+            )
+            sourceSet("main") {
+                for (i in 1..100) {
+                    java(
+                        """
+                        package com.foo;
+
+                        public class A$i {
+                        ${'\t'}public void a() {
+                        ${'\t'}}
+                        }
+                    """
+                    )
+                }
+                java(
+                    """
+                    package com.foo;
+
+                    import java.util.List;
+                    import java.io.File;
+
+                    public class SpaceIndented {
+                      List<File> files;
+                      public void a() {
+                      }
+                    }
+                """
+                )
+            }
+        }
+    }
+
+    @Test
+    fun `rewriteDryRun detects the same styles off the parse thread as on it`() {
+        tabIndentedProject("org.openrewrite.java.format.AutoFormat")
+        val onParseThread = runGradle(projectDir, taskName())
+        assertThat(onParseThread.task(":${taskName()}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+        val onParseThreadPatch = File(projectDir, "build/reports/rewrite/rewrite.patch").readText()
+        assertThat(onParseThreadPatch).contains("+\tpublic void a() {")
+
+        val offParseThread = runGradle(projectDir, taskName(), "-Pparallel")
+        assertThat(offParseThread.task(":${taskName()}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+        assertThat(File(projectDir, "build/reports/rewrite/rewrite.patch").readText()).isEqualTo(onParseThreadPatch)
+    }
+
+    @Test
+    fun `rewriteDryRun only reports sources changed by the recipe, not those given the detected styles`() {
+        tabIndentedProject("org.openrewrite.java.OrderImports")
+        val result = runGradle(projectDir, taskName())
+        assertThat(result.task(":${taskName()}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+
+        val patch = File(projectDir, "build/reports/rewrite/rewrite.patch").readText()
+        assertThat(patch).contains("SpaceIndented.java")
+        assertThat(patch).doesNotContainPattern("A\\d+\\.java")
+        assertThat(result.output).doesNotContainPattern("These recipes would make changes to \\S*A\\d+\\.java")
+    }
+
     @Test
     fun `A recipe with optional configuration can be activated directly`() {
         gradleProject(projectDir) {
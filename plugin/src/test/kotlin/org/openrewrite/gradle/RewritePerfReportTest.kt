@@ -0,0 +1,110 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.gradle
+
+import org.assertj.core.api.Assertions.assertThat
+import org.gradle.testkit.runner.TaskOutcome
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+
+class RewritePerfReportTest : RewritePluginTest {
+    @TempDir
+    lateinit var projectDir: File
+
+    override fun taskName(): String = "rewritePerfReport"
+
+    @BeforeEach
+    fun project() {
+        gradleProject(projectDir) {
+            buildGradle(
+                """
+                plugins {
+                    id("java")
+                    id("org.openrewrite.rewrite")
+                }
+
+                repositories {
+                    mavenCentral()
+                }
+
+                rewrite {
+                    activeRecipe("org.openrewrite.java.format.AutoFormat")
+                }
+            """
+            )
+            sourceSet("main") {
+                java(
+                    """
+                    package org.openrewrite.before;
+
+                    public class HelloWorld { public static void sayHello() { } }
+                """
+                )
+            }
+        }
+    }
+
+    @Test
+    fun `rewritePerfReport stores its first report as the baseline`() {
+        val result = runGradle(projectDir, taskName())
+        assertThat(result.task(":${taskName()}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+        assertThat(result.output).contains("Stored the performance report as the baseline for later runs")
+
+        val report = File(projectDir, "build/reports/rewrite/perf.json").readText()
+        assertThat(report)
+            .contains("\"discovery\"", "\"classpathResolution\"", "\"parse\"", "\"autodetect\"", "\"recipeRun\"", "\"diff\"", "\"patchWrite\"", "\"writeBack\"")
+            .contains("\"java\" : {")
+            .contains("\"filesPerSecond\"")
+            .contains("\"peakHeapMb\"")
+        assertThat(File(projectDir, "build/reports/rewrite/perf-baseline.json").readText()).isEqualTo(report)
+        assertThat(File(projectDir, "src/main/java/org/openrewrite/before/HelloWorld.java").readText())
+            .contains("public class HelloWorld { public static void sayHello() { } }")
+    }
+
+    @Test
+    fun `rewritePerfReport with writeBack applies the changes as rewriteRun does`() {
+        val result = runGradle(projectDir, taskName(), "--writeBack")
+        assertThat(result.task(":${taskName()}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+        assertThat(result.output).contains("Wrote results in")
+
+        assertThat(File(projectDir, "build/reports/rewrite/perf.json")).exists()
+        assertThat(File(projectDir, "build/reports/rewrite/perf.patch")).doesNotExist()
+        assertThat(File(projectDir, "src/main/java/org/openrewrite/before/HelloWorld.java").readText())
+            .doesNotContain("public class HelloWorld { public static void sayHello() { } }")
+    }
+
+    @Test
+    fun `rewritePerfReport warns about phases which regressed beyond the threshold`() {
+        File(projectDir, "baseline.json").writeText(
+            """
+            {
+              "phasesMs" : {
+                "parse" : 100
+              }
+            }
+            """.trimIndent()
+        )
+
+        val result = runGradle(projectDir, taskName(), "--baseline=baseline.json", "--regressionThreshold=-100")
+        assertThat(result.task(":${taskName()}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+        assertThat(result.output)
+            .contains("parse: ")
+            .containsPattern("parse took \\d+ ms, -?\\d+% longer than the 100 ms of the baseline")
+        assertThat(File(projectDir, "baseline.json").readText()).doesNotContain("recipeRun")
+    }
+}
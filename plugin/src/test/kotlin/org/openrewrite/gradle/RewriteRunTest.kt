@@ -366,6 +366,486 @@ class RewriteRunTest : RewritePluginTest {
         assertThat(propertiesFile.readText()).isEqualTo("bar=baz\n")
     }
 
+    @Test
+    fun `rewriteRun parses the projects of a multi-project build in parallel`(
+        @TempDir projectDir: File
+    ) {
+        gradleProject(projectDir) {
+            buildGradle(
+                """
+                plugins {
+                    id("org.openrewrite.rewrite")
+                }
+
+                rewrite {
+                    activeRecipe("org.openrewrite.java.format.AutoFormat")
+                    parallelism = 2
+                }
+
+                subprojects {
+                    apply plugin: "java"
+
+                    repositories {
+                        mavenCentral()
+                    }
+                }
+            """
+            )
+            subproject("a") {
+                sourceSet("main") {
+                    java(
+                        """
+                        package com.foo;
+
+                        public class A { public void a() { } }
+                    """
+                    )
+                }
+            }
+            subproject("b") {
+                sourceSet("main") {
+                    java(
+                        """
+                        package com.foo;
+
+                        public class B { public void b() { } }
+                    """
+                    )
+                }
+            }
+        }
+
+        val result = runGradle(projectDir, taskName())
+        val rewriteRunResult = result.task(":${taskName()}")!!
+        assertThat(rewriteRunResult.outcome).isEqualTo(TaskOutcome.SUCCESS)
+        assertThat(result.output).contains("Parsing 3 projects using 2 threads")
+
+        //language=java
+        assertThat(File(projectDir, "a/src/main/java/com/foo/A.java").readText()).isEqualTo(
+            """
+            package com.foo;
+
+            public class A {
+                public void a() {
+                }
+            }
+            """.trimIndent()
+        )
+        //language=java
+        assertThat(File(projectDir, "b/src/main/java/com/foo/B.java").readText()).isEqualTo(
+            """
+            package com.foo;
+
+            public class B {
+                public void b() {
+                }
+            }
+            """.trimIndent()
+        )
+    }
+
+    @Test
+    fun `rewriteRun writes the same files whether results are written in parallel or not`(
+        @TempDir tempDir: File
+    ) {
+        fun project(projectDir: File, parallelism: Int) = gradleProject(projectDir) {
+            rewriteYaml(
+                """
+                type: specs.openrewrite.org/v1beta/recipe
+                name: com.example.WriteEverything
+                displayName: Generate, delete, move and change files
+                recipeList:
+                  - org.openrewrite.text.CreateTextFile:
+                      relativeFileName: generated.txt
+                      fileContents: generated
+                  - org.openrewrite.DeleteSourceFiles:
+                      filePattern: "**/Deleted.java"
+                  - org.openrewrite.java.ChangePackage:
+                      oldPackageName: com.moved
+                      newPackageName: com.moved.here
+                  - org.openrewrite.java.format.AutoFormat
+            """
+            )
+            buildGradle(
+                """
+                plugins {
+                    id("java")
+                    id("org.openrewrite.rewrite")
+                }
+
+                repositories {
+                    mavenCentral()
+                }
+
+                rewrite {
+                    activeRecipe("com.example.WriteEverything")
+                    parallelism = $parallelism
+                }
+            """
+            )
+            sourceSet("main") {
+                java(
+                    """
+                    package com.foo;
+
+                    public class Deleted { }
+                """
+                )
+                for (i in 1..20) {
+                    java(
+                        """
+                        package com.moved;
+
+                        public class Moved$i { public void a() { } }
+                    """
+                    )
+                    java(
+                        """
+                        package com.foo;
+
+                        public class Changed$i { public void a() { } }
+                    """
+                    )
+                }
+            }
+        }
+
+        // The build scripts differ in the project name and parallelism alone
+        fun writtenFiles(projectDir: File): Map<String, String> = projectDir.walk()
+            .onEnter { it.name != "build" && it.name != ".gradle" }
+            .filter { it.isFile && it.name != "settings.gradle" && it.name != "build.gradle" }
+            .associate { it.relativeTo(projectDir).invariantSeparatorsPath to it.readText() }
+
+        val sequentialDir = File(tempDir, "sequential")
+        project(sequentialDir, 1)
+        assertThat(runGradle(sequentialDir, taskName()).task(":${taskName()}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+
+        val parallelDir = File(tempDir, "parallel")
+        project(parallelDir, 4)
+        assertThat(runGradle(parallelDir, taskName()).task(":${taskName()}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+
+        val sequential = writtenFiles(sequentialDir)
+        assertThat(sequential)
+            .containsKeys("generated.txt", "src/main/java/com/moved/here/Moved1.java")
+            .doesNotContainKeys("src/main/java/com/foo/Deleted.java", "src/main/java/com/moved/Moved1.java")
+        assertThat(writtenFiles(parallelDir)).isEqualTo(sequential)
+    }
+
+    @Test
+    fun `rewriteRun keeps sources on disk when the source set is disk backed`(
+        @TempDir projectDir: File
+    ) {
+        gradleProject(projectDir) {
+            buildGradle(
+                """
+                plugins {
+                    id("java")
+                    id("org.openrewrite.rewrite")
+                }
+
+                repositories {
+                    mavenCentral()
+                }
+
+                rewrite {
+                    activeRecipe("org.openrewrite.java.format.AutoFormat")
+                    diskBackedSourceSet = true
+                    sourceSetMemoryBudgetMb = 0
+                }
+            """
+            )
+            sourceSet("main") {
+                java(
+                    """
+                    package com.foo;
+
+                    public class A { public void a() { } }
+                """
+                )
+            }
+        }
+
+        val result = runGradle(projectDir, taskName())
+        val rewriteRunResult = result.task(":${taskName()}")!!
+        assertThat(rewriteRunResult.outcome).isEqualTo(TaskOutcome.SUCCESS)
+
+        //language=java
+        assertThat(File(projectDir, "src/main/java/com/foo/A.java").readText()).isEqualTo(
+            """
+            package com.foo;
+
+            public class A {
+                public void a() {
+                }
+            }
+            """.trimIndent()
+        )
+        assertThat(File(projectDir, "build/rewrite/lst")).doesNotExist()
+    }
+
+    @Test
+    @DisabledOnOs(OS.WINDOWS)
+    fun `rewriteRun keeps file attributes changed since a source was cached`(
+        @TempDir projectDir: File
+    ) {
+        gradleProject(projectDir) {
+            buildGradle(
+                """
+                plugins {
+                    id("java")
+                    id("org.openrewrite.rewrite")
+                }
+
+                repositories {
+                    mavenCentral()
+                }
+
+                rewrite {
+                    activeRecipe("org.openrewrite.java.format.AutoFormat")
+                    cacheParsedSources = true
+                }
+            """
+            )
+            sourceSet("main") {
+                java(
+                    """
+                    package com.foo;
+
+                    public class A { public void a() { } }
+                """
+                )
+            }
+        }
+        val source = File(projectDir, "src/main/java/com/foo/A.java")
+        assertThat(runGradle(projectDir, "rewriteDryRun").task(":rewriteDryRun")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+        assertThat(source.setExecutable(true)).isTrue
+
+        val result = runGradle(projectDir, taskName())
+        assertThat(result.task(":${taskName()}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+        assertThat(result.output).containsPattern("Reused [1-9]\\d* of \\d+ sources from the LST cache")
+        assertThat(source.canExecute()).isTrue
+    }
+
+    @Test
+    fun `rewriteRun runs recipes on sources as they are parsed`(
+        @TempDir projectDir: File
+    ) {
+        gradleProject(projectDir) {
+            buildGradle(
+                """
+                plugins {
+                    id("java")
+                    id("org.openrewrite.rewrite")
+                }
+
+                repositories {
+                    mavenCentral()
+                }
+
+                rewrite {
+                    activeRecipe("org.openrewrite.java.format.AutoFormat")
+                    streamRecipeRun = true
+                }
+            """
+            )
+            sourceSet("main") {
+                java(
+                    """
+                    package com.foo;
+
+                    public class A { public void a() { } }
+                """
+                )
+            }
+        }
+
+        val result = runGradle(projectDir, taskName())
+        val rewriteRunResult = result.task(":${taskName()}")!!
+        assertThat(rewriteRunResult.outcome).isEqualTo(TaskOutcome.SUCCESS)
+        assertThat(result.output).contains("Running active recipes on sources as they are parsed")
+
+        //language=java
+        assertThat(File(projectDir, "src/main/java/com/foo/A.java").readText()).isEqualTo(
+            """
+            package com.foo;
+
+            public class A {
+                public void a() {
+                }
+            }
+            """.trimIndent()
+        )
+    }
+
+    @Test
+    fun `rewriteRun does not run recipes on sources as they are parsed when a precondition scans`(
+        @TempDir projectDir: File
+    ) {
+        gradleProject(projectDir) {
+            rewriteYaml(
+                """
+                type: specs.openrewrite.org/v1beta/recipe
+                name: org.openrewrite.test.IsGreeting
+                displayName: Is greeting.txt
+                recipeList:
+                  - org.openrewrite.FindSourceFiles:
+                      filePattern: "**/greeting.txt"
+                ---
+                type: specs.openrewrite.org/v1beta/recipe
+                name: org.openrewrite.test.ChangeGreeting
+                displayName: Change greeting.txt
+                preconditions:
+                  - org.openrewrite.test.IsGreeting
+                recipeList:
+                  - org.openrewrite.text.ChangeText:
+                      toText: hello world
+            """
+            )
+            buildGradle(
+                """
+                plugins {
+                    id("java")
+                    id("org.openrewrite.rewrite")
+                }
+
+                repositories {
+                    mavenCentral()
+                }
+
+                rewrite {
+                    activeRecipe("org.openrewrite.test.ChangeGreeting")
+                    streamRecipeRun = true
+                }
+            """
+            )
+            textFile("greeting.txt", "hello")
+            textFile("farewell.txt", "goodbye")
+        }
+
+        val result = runGradle(projectDir, taskName())
+        val rewriteRunResult = result.task(":${taskName()}")!!
+        assertThat(rewriteRunResult.outcome).isEqualTo(TaskOutcome.SUCCESS)
+        assertThat(result.output).doesNotContain("Running active recipes on sources as they are parsed")
+
+        assertThat(File(projectDir, "greeting.txt").readText()).isEqualTo("hello world")
+        assertThat(File(projectDir, "farewell.txt").readText()).isEqualTo("goodbye")
+    }
+
+    @Test
+    fun `rewriteRun records parse and recipe metrics`(
+        @TempDir projectDir: File
+    ) {
+        gradleProject(projectDir) {
+            buildGradle(
+                """
+                plugins {
+                    id("java")
+                    id("org.openrewrite.rewrite")
+                }
+
+                repositories {
+                    mavenCentral()
+                }
+
+                rewrite {
+                    activeRecipe("org.openrewrite.java.format.AutoFormat")
+                }
+            """
+            )
+            sourceSet("main") {
+                java(
+                    """
+                    package com.foo;
+
+                    public class A { public void a() { } }
+                """
+                )
+            }
+        }
+
+        val result = runGradle(projectDir, taskName())
+        val rewriteRunResult = result.task(":${taskName()}")!!
+        assertThat(rewriteRunResult.outcome).isEqualTo(TaskOutcome.SUCCESS)
+        assertThat(result.output)
+            .contains("rewrite.parse{language=java,project.name=${projectDir.name}} count=1")
+            .contains("rewrite.refactor.plan{outcome=success,project.name=${projectDir.name}} count=1")
+            .contains("rewrite.refactor.plan.changes{project.name=${projectDir.name},visitor=org.openrewrite.java.format.AutoFormat} count=1")
+    }
+
+    @Test
+    fun `rewriteRun records metrics per project into the metrics plugin's registry`(
+        @TempDir projectDir: File
+    ) {
+        gradleProject(projectDir) {
+            buildGradle(
+                """
+                plugins {
+                    id("org.openrewrite.rewrite")
+                }
+
+                rewrite {
+                    activeRecipe("org.openrewrite.java.format.AutoFormat")
+                    metricsUri = "tcp://localhost:7102"
+                }
+
+                repositories {
+                    mavenCentral()
+                }
+
+                subprojects {
+                    apply plugin: "java"
+                }
+
+                // Stands in for the recorder of the org.openrewrite.rewrite-metrics plugin
+                def recorded = java.util.concurrent.ConcurrentHashMap.newKeySet()
+                ext.rewriteMetricsRecorder = { Map<String, String> meter ->
+                    return { double value ->
+                        recorded.add(meter["name"] + "{project.name=" + meter["tag.project.name"] + "} " + meter["type"])
+                    } as java.util.function.DoubleConsumer
+                } as java.util.function.Function
+
+                tasks.register("printRewriteMetrics") {
+                    mustRunAfter("rewriteRun")
+                    doLast {
+                        recorded.toSorted().each { println(it) }
+                    }
+                }
+            """
+            )
+            subproject("a") {
+                sourceSet("main") {
+                    java(
+                        """
+                        package com.foo;
+
+                        public class A { }
+                    """
+                    )
+                }
+            }
+            subproject("b") {
+                sourceSet("main") {
+                    java(
+                        """
+                        package com.foo;
+
+                        public class B { }
+                    """
+                    )
+                }
+            }
+        }
+
+        val result = runGradle(projectDir, taskName(), "printRewriteMetrics")
+        assertThat(result.task(":${taskName()}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+        assertThat(result.output)
+            .contains("rewrite.parse{project.name=a} timer")
+            .contains("rewrite.parse{project.name=b} timer")
+            .contains("rewrite.evaluated.source.files{project.name=a} summary")
+            .contains("rewrite.refactor.plan{project.name=${projectDir.name}} timer")
+            .doesNotContain("Metrics can't be published")
+    }
+
     @Test
     fun `resources in subproject committed to git are correctly processed`(
         @TempDir projectDir: File
@@ -563,6 +1043,163 @@ class RewriteRunTest : RewritePluginTest {
         )
     }
 
+    @Test
+    fun `sources which the active recipes can't change are not parsed when opted in`(
+        @TempDir projectDir: File
+    ) {
+        gradleProject(projectDir) {
+            rewriteYaml(
+                """
+                type: specs.openrewrite.org/v1beta/recipe
+                name: com.example.RenameSam
+                displayName: Rename property keys
+                description: Renames property keys named 'sam' to 'samuel'
+                recipeList:
+                  - org.openrewrite.properties.ChangePropertyKey:
+                      oldPropertyKey: sam
+                      newPropertyKey: samuel
+            """
+            )
+            buildGradle(
+                """
+                plugins {
+                    id("java")
+                    id("org.openrewrite.rewrite")
+                }
+
+                repositories {
+                    mavenLocal()
+                    mavenCentral()
+                    maven {
+                       url = uri("https://oss.sonatype.org/content/repositories/snapshots")
+                    }
+                }
+
+                rewrite {
+                    activeRecipe("com.example.RenameSam")
+                    parseOnlyAffectedSources = true
+                }
+            """
+            )
+            sourceSet("main") {
+                propertiesFile("in-sourceset.properties", "sam=true\n")
+                java(
+                    """
+                    package com.foo;
+
+                    class A {}
+                """
+                )
+            }
+        }
+        val result = runGradle(projectDir, taskName())
+        val rewriteRunResult = result.task(":${taskName()}")!!
+        assertThat(rewriteRunResult.outcome).isEqualTo(TaskOutcome.SUCCESS)
+
+        assertThat(result.output).contains("Only parsing [Properties.File] sources")
+        assertThat(result.output).contains("Skipping 1 J.CompilationUnit sources")
+        assertThat(File(projectDir, "src/main/resources/in-sourceset.properties").readText()).isEqualTo("samuel=true\n")
+    }
+
+    @Test
+    fun `every source is parsed unless opted in to parsing only affected sources`(
+        @TempDir projectDir: File
+    ) {
+        gradleProject(projectDir) {
+            rewriteYaml(
+                """
+                type: specs.openrewrite.org/v1beta/recipe
+                name: com.example.RenameSam
+                displayName: Rename property keys
+                recipeList:
+                  - org.openrewrite.properties.ChangePropertyKey:
+                      oldPropertyKey: sam
+                      newPropertyKey: samuel
+            """
+            )
+            buildGradle(
+                """
+                plugins {
+                    id("java")
+                    id("org.openrewrite.rewrite")
+                }
+
+                repositories {
+                    mavenCentral()
+                }
+
+                rewrite {
+                    activeRecipe("com.example.RenameSam")
+                }
+            """
+            )
+            sourceSet("main") {
+                propertiesFile("in-sourceset.properties", "sam=true\n")
+                java(
+                    """
+                    package com.foo;
+
+                    class A {}
+                """
+                )
+            }
+        }
+        val result = runGradle(projectDir, taskName(), "--info")
+        assertThat(result.task(":${taskName()}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+
+        assertThat(result.output).doesNotContain("Skipping 1 J.CompilationUnit sources")
+        assertThat(File(projectDir, "src/main/resources/in-sourceset.properties").readText()).isEqualTo("samuel=true\n")
+    }
+
+    @Test
+    fun `sources are all parsed for a recipe whose visitor may change sources of any type`(
+        @TempDir projectDir: File
+    ) {
+        gradleProject(projectDir) {
+            rewriteYaml(
+                """
+                type: specs.openrewrite.org/v1beta/recipe
+                name: com.example.DeleteA
+                displayName: Delete A.java
+                recipeList:
+                  - org.openrewrite.DeleteSourceFiles:
+                      filePattern: "**/A.java"
+            """
+            )
+            buildGradle(
+                """
+                plugins {
+                    id("java")
+                    id("org.openrewrite.rewrite")
+                }
+
+                repositories {
+                    mavenCentral()
+                }
+
+                rewrite {
+                    activeRecipe("com.example.DeleteA")
+                    parseOnlyAffectedSources = true
+                }
+            """
+            )
+            sourceSet("main") {
+                java(
+                    """
+                    package com.foo;
+
+                    class A {}
+                """
+                )
+            }
+        }
+        val result = runGradle(projectDir, taskName())
+        assertThat(result.task(":${taskName()}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+
+        assertThat(result.output).doesNotContain("Skipping 1 J.CompilationUnit sources")
+        assertThat(File(projectDir, "src/main/java/com/foo/A.java")).doesNotExist()
+    }
+
     @Test
     fun `Recipes that generate sources have those sources written out to disk successfully`(
         @TempDir projectDir: File
@@ -1240,6 +1877,47 @@ class RewriteRunTest : RewritePluginTest {
             .isEqualTo("jonathan")
     }
 
+    @Test
+    fun `rewriteRun does not write results which only change whitespace within lines`(@TempDir projectDir: File) {
+        gradleProject(projectDir) {
+            rewriteYaml(
+                """
+                type: specs.openrewrite.org/v1beta/recipe
+                name: org.openrewrite.CollapseSpaces
+                displayName: Collapse the spaces of greeting.txt
+                description: Changes only the whitespace within a line.
+                preconditions:
+                  - org.openrewrite.FindSourceFiles:
+                      filePattern: "**/greeting.txt"
+                recipeList:
+                  - org.openrewrite.text.ChangeText:
+                      toText: hello world
+            """
+            )
+            buildGradle(
+                """
+                plugins {
+                    id("org.openrewrite.rewrite")
+                }
+
+                repositories {
+                    mavenCentral()
+                }
+
+                rewrite {
+                    activeRecipe("org.openrewrite.CollapseSpaces")
+                }
+            """
+            )
+            textFile("greeting.txt", "hello  world")
+        }
+
+        val result = runGradle(projectDir, taskName())
+        assertThat(result.task(":${taskName()}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+        assertThat(result.output).doesNotContain("Changes have been made to")
+        assertThat(projectDir.resolve("greeting.txt").readText()).isEqualTo("hello  world")
+    }
+
     @Test
     fun overlappingSourceSet(@TempDir buildRoot: File) {
         gradleProject(buildRoot) {
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.gradle.isolated
+
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import org.openrewrite.polyglot.OmniParser
+import org.openrewrite.quark.QuarkParser
+import org.openrewrite.text.PlainTextParser
+import java.io.File
+import java.nio.file.Path
+
+class FileIndexTest {
+
+    @TempDir
+    lateinit var root: File
+
+    private fun file(path: String, text: String = "a: b") = File(root, path).apply {
+        parentFile.mkdirs()
+        writeText(text)
+    }
+
+    @BeforeEach
+    fun repository() {
+        file("settings.gradle", "rootProject.name = 'a'")
+        file("src/main/resources/application.yml")
+        file("src/main/resources/application.properties", "a=b")
+        file("src/main/resources/logback.xml", "<configuration/>")
+        file("src/main/resources/data.bin", "\u0000\u0001")
+        file("docs/README.md", "# Docs")
+        file("excluded/config.yml")
+        file("sub/config.json", "{}")
+        file("build/generated.yml")
+        file("sub/build/generated.yml")
+        file(".idea/workspace.xml", "<project/>")
+        file(".git/config", "[core]")
+        file(".git/objects/ab/cdef", "object")
+        file(".gradle/8.5/checksums.lock", "lock")
+        file("node_modules/left-pad/package.json", "{}")
+        file("web/node_modules/left-pad/package.json", "{}")
+    }
+
+    private fun omniParser(exclusions: List<String> = emptyList()): OmniParser =
+        OmniParser.builder(
+            OmniParser.defaultResourceParsers(),
+            PlainTextParser.builder().build(),
+            QuarkParser.builder().build()
+        )
+            .exclusionMatchers(matchers(exclusions))
+            .build()
+
+    private fun matchers(exclusions: List<String>) = exclusions.map { root.toPath().fileSystem.getPathMatcher("glob:$it") }
+
+    private fun relative(paths: Collection<Path>) = paths.map { root.toPath().relativize(it).toString().replace(File.separatorChar, '/') }
+
+    @Test
+    fun `version control, Gradle and npm directories are not indexed`() {
+        val files = relative(FileIndex(root.toPath()).filesUnder(root.toPath()))
+
+        assertThat(files)
+            .contains("settings.gradle", "src/main/resources/application.yml", "build/generated.yml", ".idea/workspace.xml")
+            .noneMatch { it.startsWith(".git/") || it.startsWith(".gradle/") || it.contains("node_modules/") }
+    }
+
+    @Test
+    fun `a directory which isn't indexed is walked when looked up`() {
+        val files = relative(FileIndex(root.toPath()).filesUnder(root.toPath().resolve(".git")))
+
+        assertThat(files).containsExactlyInAnyOrder(".git/config", ".git/objects/ab/cdef")
+    }
+
+    @Test
+    fun `the accepted paths are those the parser would find by walking the repository`() {
+        val index = FileIndex(root.toPath())
+        val omniParser = omniParser()
+
+        for (searchDir in listOf(root.toPath(), root.toPath().resolve("src/main/resources"), root.toPath().resolve("sub"))) {
+            assertThat(relative(index.acceptedPaths(omniParser, root.toPath(), searchDir, emptyList(), emptySet(), 0)))
+                .containsExactlyInAnyOrderElementsOf(relative(omniParser.acceptedPaths(root.toPath(), searchDir)))
+        }
+    }
+
+    @Test
+    fun `the accepted paths leave out exclusions and sources already parsed, as the parser does`() {
+        val index = FileIndex(root.toPath())
+        val omniParser = omniParser(listOf("excluded"))
+        val alreadyParsed = setOf(root.toPath().resolve("src/main/resources/application.yml"))
+
+        val accepted = relative(
+            index.acceptedPaths(omniParser, root.toPath(), root.toPath(), matchers(listOf("excluded")), alreadyParsed, 0)
+        )
+
+        assertThat(accepted).doesNotContain("excluded/config.yml", "src/main/resources/application.yml")
+        assertThat(accepted).containsExactlyInAnyOrderElementsOf(
+            relative(omniParser.acceptedPaths(root.toPath(), root.toPath()))
+                .filter { it != "src/main/resources/application.yml" })
+    }
+}
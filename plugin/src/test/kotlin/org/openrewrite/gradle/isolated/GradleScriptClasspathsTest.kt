@@ -0,0 +1,64 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.gradle.isolated
+
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+
+class GradleScriptClasspathsTest {
+
+    @TempDir
+    lateinit var dir: File
+
+    private fun jar(name: String) = File(dir, name).apply { writeText("plugin") }
+
+    @Test
+    fun `unchanged classpaths are current`() {
+        val classpaths = GradleScriptClasspaths(listOf(jar("settings-plugin.jar").toPath()), listOf(jar("plugin.jar").toPath()))
+
+        assertThat(classpaths.isCurrent()).isTrue
+    }
+
+    @Test
+    fun `classpaths are resolved again once a plugin jar is rebuilt`() {
+        val plugin = jar("plugin.jar")
+        val classpaths = GradleScriptClasspaths(emptyList(), listOf(plugin.toPath()))
+
+        plugin.writeText("rebuilt plugin")
+        assertThat(classpaths.isCurrent()).isFalse
+        assertThat(GradleScriptClasspaths(emptyList(), listOf(plugin.toPath())).stamp).isNotEqualTo(classpaths.stamp)
+    }
+
+    @Test
+    fun `classpaths are resolved again once a settings plugin jar is touched`() {
+        val settingsPlugin = jar("settings-plugin.jar")
+        val classpaths = GradleScriptClasspaths(listOf(settingsPlugin.toPath()), emptyList())
+
+        assertThat(settingsPlugin.setLastModified(settingsPlugin.lastModified() - 60_000)).isTrue
+        assertThat(classpaths.isCurrent()).isFalse
+    }
+
+    @Test
+    fun `classpaths are resolved again once a plugin jar is deleted`() {
+        val plugin = jar("plugin.jar")
+        val classpaths = GradleScriptClasspaths(emptyList(), listOf(plugin.toPath()))
+
+        assertThat(plugin.delete()).isTrue
+        assertThat(classpaths.isCurrent()).isFalse
+    }
+}
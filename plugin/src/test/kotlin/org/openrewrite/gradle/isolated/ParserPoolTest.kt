@@ -0,0 +1,101 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.gradle.isolated
+
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.openrewrite.SourceFile
+import org.openrewrite.text.PlainTextParser
+import java.util.stream.Collectors.toList
+import java.util.stream.Stream
+
+class ParserPoolTest {
+
+    class CountingParser : PlainTextParser() {
+        var resets = 0
+
+        override fun reset(): PlainTextParser {
+            resets++
+            return this
+        }
+    }
+
+    private val created = mutableListOf<CountingParser>()
+
+    private fun parse(key: List<Any>, vararg sources: String, leased: (CountingParser) -> Unit = {}): Stream<SourceFile> =
+        ParserPool.parse(key, { CountingParser().also { created.add(it) } }) { parser ->
+            leased(parser)
+            parser.parse(*sources)
+        }
+
+    @BeforeEach
+    @AfterEach
+    fun clear() {
+        ParserPool.clear()
+    }
+
+    @Test
+    fun `a parser is reused for the next source set with the same configuration, and reset in between`() {
+        val leased = mutableListOf<CountingParser>()
+        assertThat(parse(listOf("text", "main"), "a", "b", leased = leased::add).collect(toList())).hasSize(2)
+        assertThat(created).hasSize(1)
+        assertThat(created[0].resets).isEqualTo(1)
+
+        assertThat(parse(listOf("text", "main"), "c", leased = leased::add).collect(toList())).hasSize(1)
+        assertThat(created).hasSize(1)
+        assertThat(leased).containsExactly(created[0], created[0])
+        assertThat(created[0].resets).isEqualTo(2)
+    }
+
+    @Test
+    fun `a parser is only reused for the same configuration`() {
+        parse(listOf("text", "main"), "a").collect(toList())
+        parse(listOf("text", "test"), "b").collect(toList())
+
+        assertThat(created).hasSize(2)
+    }
+
+    @Test
+    fun `source sets parsed at the same time each get a parser of their own`() {
+        // The second source set is parsed while the first one's parser is leased
+        parse(listOf("text", "main"), "a", leased = {
+            parse(listOf("text", "main"), "b").collect(toList())
+        }).collect(toList())
+
+        assertThat(created).hasSize(2)
+        assertThat(created.map { it.resets }).containsOnly(1)
+    }
+
+    @Test
+    fun `a parser is returned once its stream is closed part way`() {
+        parse(listOf("text", "main"), "a", "b").use { it.iterator().next() }
+        assertThat(created[0].resets).isEqualTo(1)
+
+        parse(listOf("text", "main"), "c").collect(toList())
+        assertThat(created).hasSize(1)
+    }
+
+    @Test
+    fun `evicted parsers are not reused`() {
+        parse(listOf("text", "main"), "a").collect(toList())
+        ParserPool.evict { it[1] == "main" }
+        parse(listOf("text", "main"), "b").collect(toList())
+
+        assertThat(created).hasSize(2)
+    }
+}
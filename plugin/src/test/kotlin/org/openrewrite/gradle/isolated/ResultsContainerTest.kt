@@ -0,0 +1,78 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.gradle.isolated
+
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.params.ParameterizedTest
+import org.junit.jupiter.params.provider.ValueSource
+import org.openrewrite.ExecutionContext
+import org.openrewrite.InMemoryExecutionContext
+import org.openrewrite.Recipe
+import org.openrewrite.TreeVisitor
+import org.openrewrite.internal.InMemoryLargeSourceSet
+import org.openrewrite.marker.Markup
+import org.openrewrite.text.PlainText
+import org.openrewrite.text.PlainTextVisitor
+import java.nio.file.Paths
+
+class ResultsContainerTest {
+
+    /**
+     * Changes every source, marking those whose text is "fail" with an error.
+     */
+    class FailOnSomeSources : Recipe() {
+        override fun getDisplayName(): String = "Fail on some sources"
+
+        override fun getDescription(): String = "Changes every source, marking those whose text is `fail` with an error."
+
+        override fun getVisitor(): TreeVisitor<*, ExecutionContext> = object : PlainTextVisitor<ExecutionContext>() {
+            override fun visitText(text: PlainText, ctx: ExecutionContext): PlainText {
+                val changed = text.withText(text.text + "!")
+                return if (text.text == "fail") {
+                    Markup.error(changed, RuntimeException("Failed on ${text.sourcePath}"))
+                } else {
+                    changed
+                }
+            }
+        }
+    }
+
+    private fun results(vararg failing: Int): ResultsContainer {
+        val sources = (0 until 500).map { i ->
+            PlainText.builder()
+                .sourcePath(Paths.get("$i.txt"))
+                .text(if (i in failing) "fail" else "pass")
+                .build()
+        }
+        val recipeRun = FailOnSomeSources().run(InMemoryLargeSourceSet(sources), InMemoryExecutionContext())
+        return ResultsContainer(Paths.get("."), recipeRun)
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = [1, 8])
+    fun `the first error is the one of the earliest result`(parallelism: Int) {
+        val error = results(100, 400, 499).getFirstException(parallelism)
+
+        assertThat(error).isNotNull
+        assertThat(error!!.message).contains("Error while visiting 100.txt")
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = [1, 8])
+    fun `there is no error when no result carries one`(parallelism: Int) {
+        assertThat(results().getFirstException(parallelism)).isNull()
+    }
+}